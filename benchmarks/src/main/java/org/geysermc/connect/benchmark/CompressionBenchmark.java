@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.benchmark;
+
+import com.nukkitx.protocol.bedrock.BedrockPacketCodec;
+import com.nukkitx.protocol.bedrock.BedrockServerSession;
+import com.nukkitx.protocol.bedrock.data.PacketCompressionAlgorithm;
+import com.nukkitx.protocol.bedrock.packet.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.geysermc.connect.utils.CompressionMode;
+import org.geysermc.connect.utils.SpawnProfile;
+import org.geysermc.connect.utils.SpawnSequence;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the CPU time and bytes sent per join for each compression profile and spawn profile.
+ * Every packet we send a joining player is compressed as it would be on the wire, apart from
+ * the spawn sequence which comes from the batch cached for the same algorithm and level.
+ * The bytes per join are printed during setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+    /**
+     * The compression mode and zlib level to use
+     */
+    @Param({"zlib-1", "zlib-6", "zlib-9", "snappy", "none"})
+    public String profile;
+
+    @Param({"full", "minimal"})
+    public String spawnProfile;
+
+    private LoopbackSession loopback;
+    private BedrockServerSession session;
+
+    private PacketCompressionAlgorithm algorithm;
+    private int level;
+    private SpawnProfile spawn;
+
+    /**
+     * The uncompressed batches sent during a join other than the spawn sequence
+     */
+    private final List<ByteBuf> batches = new ArrayList<>();
+
+    @Setup
+    public void setup() throws Exception {
+        loopback = new LoopbackSession();
+        session = loopback.getSession();
+
+        String[] parts = profile.split("-");
+        CompressionMode mode = CompressionMode.valueOf(parts[0].toUpperCase(Locale.ROOT));
+        algorithm = mode.getAlgorithm();
+        level = mode.getLevel(parts.length > 1 ? Integer.parseInt(parts[1]) : 6);
+        spawn = SpawnProfile.valueOf(spawnProfile.toUpperCase(Locale.ROOT));
+
+        BedrockPacketCodec codec = session.getPacketCodec();
+        for (BedrockPacket packet : createJoinPackets()) {
+            ByteBuf payload = Unpooled.buffer();
+            codec.tryEncode(payload, packet, session);
+
+            ByteBuf batch = Unpooled.buffer();
+            SpawnSequence.writePacket(batch, codec.getId(packet), payload);
+            payload.release();
+            batches.add(batch);
+        }
+
+        long bytes = 0;
+        for (ByteBuf batch : batches) {
+            ByteBuf compressed = SpawnSequence.compress(batch, algorithm, level);
+            bytes += compressed.readableBytes();
+            compressed.release();
+        }
+        ByteBuf spawnBatch = SpawnSequence.getBatch(session, spawn, algorithm, level);
+        bytes += spawnBatch.readableBytes();
+        spawnBatch.release();
+
+        System.out.println();
+        System.out.println(profile + ", " + spawnProfile + " spawn: " + bytes + " bytes per join");
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (ByteBuf batch : batches) {
+            batch.release();
+        }
+        batches.clear();
+        loopback.close();
+    }
+
+    @Benchmark
+    public void join(Blackhole blackhole) {
+        for (ByteBuf batch : batches) {
+            ByteBuf compressed = SpawnSequence.compress(batch, algorithm, level);
+            blackhole.consume(compressed.readableBytes());
+            compressed.release();
+        }
+
+        ByteBuf spawnBatch = SpawnSequence.getBatch(session, spawn, algorithm, level);
+        blackhole.consume(spawnBatch.readableBytes());
+        spawnBatch.release();
+    }
+
+    private static List<BedrockPacket> createJoinPackets() {
+        PlayStatusPacket loginSuccess = new PlayStatusPacket();
+        loginSuccess.setStatus(PlayStatusPacket.Status.LOGIN_SUCCESS);
+
+        ResourcePacksInfoPacket resourcePacksInfo = new ResourcePacksInfoPacket();
+
+        ResourcePackStackPacket stack = new ResourcePackStackPacket();
+        stack.setExperimentsPreviouslyToggled(false);
+        stack.setForcedToAccept(false);
+        stack.setGameVersion("*");
+
+        TransferPacket transfer = new TransferPacket();
+        transfer.setAddress("play.example.com");
+        transfer.setPort(19132);
+
+        return List.of(loginSuccess, resourcePacksInfo, stack, transfer);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
+import com.nimbusds.jose.shaded.json.JSONArray;
+import com.nukkitx.protocol.bedrock.packet.LoginPacket;
+import com.nukkitx.protocol.bedrock.util.EncryptionUtils;
+import io.netty.util.AsciiString;
+import org.geysermc.connect.login.ClientDataMode;
+import org.geysermc.connect.login.LoginResult;
+import org.geysermc.connect.login.LoginVerifier;
+import org.geysermc.connect.metrics.Metrics;
+import org.geysermc.geyser.network.GameProtocol;
+import org.geysermc.geyser.session.auth.BedrockClientData;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.interfaces.ECPublicKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures each step of verifying a login using a recorded chain and skin from the resources folder.
+ * The chain is self-signed rather than signed by Mojang so it can be checked in, which means
+ * {@link EncryptionUtils#verifyChain(JSONArray)} does all the signature work and then reports it as
+ * untrusted. The full login is run with xbox auth disabled for the same reason.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private byte[] chainBytes;
+    private String skinData;
+    private ECPublicKey identityPublicKey;
+
+    private LoginVerifier verifier;
+    private LoginPacket loginPacket;
+
+    @Setup
+    public void setup() throws Exception {
+        chainBytes = readResource("login/chain.json");
+        skinData = new String(readResource("login/skin.jwt"), StandardCharsets.US_ASCII);
+
+        JsonNode chain = OBJECT_MAPPER.readTree(chainBytes).get("chain");
+        JWSObject identity = JWSObject.parse(chain.get(chain.size() - 1).asText());
+        JsonNode payload = OBJECT_MAPPER.readTree(identity.getPayload().toBytes());
+        identityPublicKey = EncryptionUtils.generateKey(payload.get("identityPublicKey").textValue());
+
+        verifier = new LoginVerifier(1, 1, false, ClientDataMode.EAGER, 0, 0, new Metrics());
+        loginPacket = new LoginPacket();
+        loginPacket.setProtocolVersion(GameProtocol.DEFAULT_BEDROCK_CODEC.getProtocolVersion());
+        loginPacket.setChainData(new AsciiString(chainBytes));
+        loginPacket.setSkinData(new AsciiString(skinData));
+    }
+
+    @TearDown
+    public void tearDown() {
+        verifier.shutdown();
+    }
+
+    @Benchmark
+    public LoginResult fullLogin() throws Exception {
+        return verifier.verifyNow(loginPacket);
+    }
+
+    @Benchmark
+    public boolean verifyChain() throws Exception {
+        JsonNode chain = OBJECT_MAPPER.readTree(chainBytes).get("chain");
+        JSONArray array = new JSONArray();
+        for (JsonNode node : chain) {
+            array.add(node.asText());
+        }
+        return EncryptionUtils.verifyChain(array);
+    }
+
+    @Benchmark
+    public boolean verifySkin() throws Exception {
+        JWSObject skin = JWSObject.parse(skinData);
+        return skin.verify(new DefaultJWSVerifierFactory().createJWSVerifier(skin.getHeader(), identityPublicKey));
+    }
+
+    @Benchmark
+    public BedrockClientData decodeClientData() throws Exception {
+        JWSObject skin = JWSObject.parse(skinData);
+        return OBJECT_MAPPER.convertValue(OBJECT_MAPPER.readTree(skin.getPayload().toBytes()), BedrockClientData.class);
+    }
+
+    static byte[] readResource(String name) throws IOException {
+        try (InputStream input = LoginBenchmark.class.getClassLoader().getResourceAsStream(name)) {
+            if (input == null) {
+                throw new IOException("Missing resource " + name);
+            }
+            return input.readAllBytes();
+        }
+    }
+}
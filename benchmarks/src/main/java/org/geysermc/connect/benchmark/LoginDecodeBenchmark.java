@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.shaded.json.JSONArray;
+import org.geysermc.connect.login.LoginDecoder;
+import org.geysermc.geyser.session.auth.BedrockClientData;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading the login data through json trees against the streaming {@link LoginDecoder}.
+ * Signatures aren't checked so the difference in parsing stands out, run with {@code -prof gc}
+ * to see the allocation per login of each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginDecodeBenchmark {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private byte[] chainBytes;
+    private byte[] skinPayload;
+
+    @Setup
+    public void setup() throws Exception {
+        chainBytes = LoginBenchmark.readResource("login/chain.json");
+        String skinData = new String(LoginBenchmark.readResource("login/skin.jwt"), StandardCharsets.US_ASCII);
+        skinPayload = JWSObject.parse(skinData).getPayload().toBytes();
+    }
+
+    @Benchmark
+    public void tree(Blackhole blackhole) throws Exception {
+        JsonNode chainData = OBJECT_MAPPER.readTree(chainBytes).get("chain");
+
+        ObjectReader reader = OBJECT_MAPPER.readerFor(new TypeReference<List<String>>() { });
+        JSONArray array = new JSONArray();
+        array.addAll(reader.readValue(chainData));
+        blackhole.consume(array);
+
+        for (JsonNode token : chainData) {
+            JsonNode payload = OBJECT_MAPPER.readTree(JWSObject.parse(token.asText()).getPayload().toBytes());
+            blackhole.consume(payload.get("identityPublicKey"));
+        }
+
+        blackhole.consume(OBJECT_MAPPER.convertValue(OBJECT_MAPPER.readTree(skinPayload), BedrockClientData.class));
+    }
+
+    @Benchmark
+    public void streaming(Blackhole blackhole) throws Exception {
+        JSONArray chain = LoginDecoder.readChain(chainBytes);
+        blackhole.consume(chain);
+
+        for (Object token : chain) {
+            blackhole.consume(LoginDecoder.readChainPayload(JWSObject.parse((String) token).getPayload().toBytes()));
+        }
+
+        blackhole.consume(LoginDecoder.readClientData(skinPayload));
+    }
+}
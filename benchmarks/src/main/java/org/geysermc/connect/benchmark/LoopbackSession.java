@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.benchmark;
+
+import com.nukkitx.protocol.bedrock.BedrockClient;
+import com.nukkitx.protocol.bedrock.BedrockPong;
+import com.nukkitx.protocol.bedrock.BedrockServer;
+import com.nukkitx.protocol.bedrock.BedrockServerEventHandler;
+import com.nukkitx.protocol.bedrock.BedrockServerSession;
+import org.geysermc.connect.proxy.GeyserBootMode;
+import org.geysermc.connect.proxy.GeyserProxyBootstrap;
+import org.geysermc.geyser.GeyserImpl;
+import org.geysermc.geyser.network.GameProtocol;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Boots Geyser's registries and opens a server session over loopback, the protocol library
+ * needs a real session to encode some packets so this is as close as we can get to an embedded channel
+ */
+public class LoopbackSession implements AutoCloseable {
+
+    private final GeyserProxyBootstrap geyserProxy;
+    private final BedrockServer server;
+    private final BedrockClient client;
+
+    private final BedrockServerSession session;
+
+    public LoopbackSession() throws IOException {
+        // Registries are only loaded by Geyser
+        GeyserImpl.setShouldStartListener(false);
+        geyserProxy = new GeyserProxyBootstrap("Benchmark", 100, false, GeyserBootMode.LEAN);
+        geyserProxy.onEnable();
+
+        int port;
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", port);
+
+        CompletableFuture<BedrockServerSession> sessionFuture = new CompletableFuture<>();
+        server = new BedrockServer(address);
+        server.setHandler(new BedrockServerEventHandler() {
+            @Override
+            public boolean onConnectionRequest(@NotNull InetSocketAddress address) {
+                return true;
+            }
+
+            @Override
+            public BedrockPong onQuery(@NotNull InetSocketAddress address) {
+                return null;
+            }
+
+            @Override
+            public void onSessionCreation(@NotNull BedrockServerSession serverSession) {
+                sessionFuture.complete(serverSession);
+            }
+        });
+        server.bind().join();
+
+        client = new BedrockClient(new InetSocketAddress("127.0.0.1", 0));
+        client.bind().join();
+        client.connect(address).join();
+
+        session = sessionFuture.join();
+        session.setPacketCodec(GameProtocol.DEFAULT_BEDROCK_CODEC);
+    }
+
+    public BedrockServerSession getSession() {
+        return session;
+    }
+
+    @Override
+    public void close() {
+        client.close();
+        server.close();
+        geyserProxy.onDisable();
+    }
+}
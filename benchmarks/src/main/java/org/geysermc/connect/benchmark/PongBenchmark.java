@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.benchmark;
+
+import com.nukkitx.protocol.bedrock.BedrockPong;
+import org.geysermc.connect.MasterServer;
+import org.geysermc.connect.utils.ServerInfo;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building a pong for every query against replying with the cached one
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PongBenchmark {
+
+    private ServerInfo serverInfo;
+    private BedrockPong cachedPong;
+
+    @Setup
+    public void setup() {
+        serverInfo = new ServerInfo("GeyserConnect Proxy", "GeyserConnect", 12, 100, "127.0.0.1", 19132, 1);
+        cachedPong = MasterServer.createPong(serverInfo, 19132, false);
+    }
+
+    @Benchmark
+    public byte[] buildPerQuery() {
+        return MasterServer.createPong(serverInfo, 19132, false).toRakNet();
+    }
+
+    @Benchmark
+    public byte[] cached() {
+        return cachedPong.toRakNet();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.benchmark;
+
+import com.nukkitx.protocol.bedrock.BedrockPacketCodec;
+import com.nukkitx.protocol.bedrock.BedrockServerSession;
+import com.nukkitx.protocol.bedrock.data.PacketCompressionAlgorithm;
+import com.nukkitx.protocol.bedrock.packet.BedrockPacket;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import org.geysermc.connect.utils.SpawnProfile;
+import org.geysermc.connect.utils.SpawnSequence;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+/**
+ * Compares encoding the spawn packets for every player, compressing the batch for every player
+ * and reusing the cached compressed batch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpawnSequenceBenchmark {
+
+    private LoopbackSession loopback;
+    private BedrockServerSession session;
+    private BedrockPacketCodec codec;
+
+    @Setup
+    public void setup() throws Exception {
+        loopback = new LoopbackSession();
+        session = loopback.getSession();
+        codec = session.getPacketCodec();
+    }
+
+    @TearDown
+    public void tearDown() {
+        loopback.close();
+    }
+
+    @Benchmark
+    public void encodePerPlayer(Blackhole blackhole) {
+        for (BedrockPacket packet : SpawnSequence.createPackets(codec.getProtocolVersion(), SpawnProfile.FULL)) {
+            ByteBuf buffer = ByteBufAllocator.DEFAULT.ioBuffer();
+            try {
+                codec.tryEncode(buffer, packet, session);
+                blackhole.consume(buffer.readableBytes());
+            } finally {
+                buffer.release();
+            }
+        }
+    }
+
+    @Benchmark
+    public void compressPerPlayer(Blackhole blackhole) {
+        // The protocol library compresses at the default level
+        ByteBuf batch = SpawnSequence.compressBatch(session, SpawnProfile.FULL, PacketCompressionAlgorithm.ZLIB, Deflater.DEFAULT_COMPRESSION);
+        try {
+            blackhole.consume(batch.readableBytes());
+        } finally {
+            batch.release();
+        }
+    }
+
+    @Benchmark
+    public void cachedBatch(Blackhole blackhole) {
+        ByteBuf batch = SpawnSequence.getBatch(session, SpawnProfile.FULL, PacketCompressionAlgorithm.ZLIB, Deflater.DEFAULT_COMPRESSION);
+        try {
+            blackhole.consume(batch.readableBytes());
+        } finally {
+            batch.release();
+        }
+    }
+}
@@ -28,6 +28,6 @@ package org.geysermc.connect;
 public class GeyserConnect {
 
     public static void main(String[] args) {
-        new MasterServer();
+        new MasterServer().awaitShutdown();
     }
 }
@@ -25,10 +25,18 @@
 
 package org.geysermc.connect;
 
+import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
+import org.geysermc.connect.backend.RoutingMode;
+import org.geysermc.connect.login.ClientDataMode;
+import org.geysermc.connect.proxy.GeyserBootMode;
+import org.geysermc.connect.utils.CompressionMode;
 import org.geysermc.connect.utils.ServerInfo;
+import org.geysermc.connect.utils.SpawnProfile;
+
+import java.util.List;
 
 @Getter
 @JsonIgnoreProperties(ignoreUnknown = true)
@@ -38,6 +46,9 @@ public class GeyserConnectConfig {
 
     private int port;
 
+    @JsonProperty("io-threads")
+    private int ioThreads = 0;
+
     @JsonProperty("debug-mode")
     private boolean debugMode;
 
@@ -47,18 +58,167 @@ public class GeyserConnectConfig {
     @JsonProperty("update-interval")
     private int updateInterval;
 
+    @JsonProperty("min-update-interval")
+    private int minUpdateInterval = 5;
+
+    @JsonProperty("max-update-interval")
+    private int maxUpdateInterval = 120;
+
+    @JsonProperty("transfer-grace-period")
+    private long transferGracePeriod = 3000;
+
     @JsonProperty("swap-motd")
     private boolean swapMotd;
 
     @JsonProperty("server-info")
-    private ServerInfo serverInfo;
+    @JsonFormat(with = JsonFormat.Feature.ACCEPT_SINGLE_VALUE_AS_ARRAY)
+    private List<ServerInfo> servers;
+
+    private RoutingMode routing = RoutingMode.LEAST_CONNECTIONS;
+
+    @JsonProperty("xbox-auth")
+    private boolean xboxAuth = true;
+
+    private CompressionSection compression = new CompressionSection();
+
+    @JsonProperty("spawn-profile")
+    private SpawnProfile spawnProfile = SpawnProfile.FULL;
+
+    @JsonProperty("client-data")
+    private ClientDataMode clientData = ClientDataMode.LAZY;
+
+    @JsonProperty("login-verification")
+    private LoginVerificationSection loginVerification = new LoginVerificationSection();
+
+    @JsonProperty("circuit-breaker")
+    private CircuitBreakerSection circuitBreaker = new CircuitBreakerSection();
+
+    @JsonProperty("join-queue")
+    private JoinQueueSection joinQueue = new JoinQueueSection();
+
+    private AdmissionSection admission = new AdmissionSection();
+
+    @JsonProperty("ping-limit")
+    private PingLimitSection pingLimit = new PingLimitSection();
+
+    private MetricsSection metrics = new MetricsSection();
 
     private GeyserConfigSection geyser;
 
+    /**
+     * Get the first configured server, which is used for the default information we reply with
+     *
+     * @return The primary server info
+     */
+    public ServerInfo getServerInfo() {
+        return servers.get(0);
+    }
+
+    @Getter
+    public static class CompressionSection {
+
+        private CompressionMode algorithm = CompressionMode.ZLIB;
+
+        private int level = 6;
+
+        private int threshold = 512;
+    }
+
+    @Getter
+    public static class LoginVerificationSection {
+
+        private int threads = 0;
+
+        @JsonProperty("queue-size")
+        private int queueSize = 1024;
+
+        @JsonProperty("cache-size")
+        private int cacheSize = 4096;
+
+        @JsonProperty("cache-time")
+        private int cacheTime = 3600;
+    }
+
+    @Getter
+    public static class CircuitBreakerSection {
+
+        @JsonProperty("failure-ratio")
+        private double failureRatio = 0.5;
+
+        @JsonProperty("minimum-transfers")
+        private int minimumTransfers = 20;
+
+        @JsonProperty("failure-window")
+        private int failureWindow = 60;
+
+        @JsonProperty("open-time")
+        private int openTime = 30;
+
+        @JsonProperty("rejoin-window")
+        private int rejoinWindow = 15;
+    }
+
+    @Getter
+    public static class JoinQueueSection {
+
+        private double rate = 0;
+
+        private double burst = 40;
+    }
+
+    @Getter
+    public static class AdmissionSection {
+
+        private boolean enabled = false;
+
+        @JsonProperty("address-rate")
+        private double addressRate = 5;
+
+        @JsonProperty("address-burst")
+        private double addressBurst = 20;
+
+        @JsonProperty("subnet-rate")
+        private double subnetRate = 50;
+
+        @JsonProperty("subnet-burst")
+        private double subnetBurst = 200;
+
+        @JsonProperty("global-rate")
+        private int globalRate = 1000;
+    }
+
+    @Getter
+    public static class PingLimitSection {
+
+        private boolean enabled = false;
+
+        @JsonProperty("address-rate")
+        private double addressRate = 2;
+
+        @JsonProperty("address-burst")
+        private double addressBurst = 10;
+
+        @JsonProperty("global-rate")
+        private int globalRate = 5000;
+    }
+
+    @Getter
+    public static class MetricsSection {
+
+        private boolean enabled = false;
+
+        private String address = "127.0.0.1";
+
+        private int port = 9100;
+    }
+
     @Getter
     public static class GeyserConfigSection {
 
         @JsonProperty("debug-mode")
         private boolean debugMode;
+
+        @JsonProperty("boot-mode")
+        private GeyserBootMode bootMode = GeyserBootMode.FULL;
     }
 }
@@ -26,13 +26,28 @@
 package org.geysermc.connect;
 
 import com.nukkitx.protocol.bedrock.*;
-import io.netty.channel.DefaultEventLoopGroup;
+import com.nukkitx.network.util.EventLoops;
+import io.netty.channel.EventLoopGroup;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import lombok.Getter;
+import org.geysermc.connect.admission.AdmissionController;
+import org.geysermc.connect.admission.PingLimiter;
+import org.geysermc.connect.backend.BackendHealth;
+import org.geysermc.connect.backend.BackendRouter;
+import org.geysermc.connect.backend.CircuitBreaker;
+import org.geysermc.connect.backend.HealthPoller;
+import org.geysermc.connect.backend.HealthSnapshot;
+import org.geysermc.connect.backend.JoinQueue;
+import org.geysermc.connect.backend.PlayerCounts;
+import org.geysermc.connect.login.LoginVerifier;
+import org.geysermc.connect.metrics.Metrics;
+import org.geysermc.connect.metrics.MetricsServer;
+import org.geysermc.connect.metrics.ProcessStats;
 import org.geysermc.connect.proxy.GeyserProxyBootstrap;
 import org.geysermc.connect.utils.GeyserConnectFileUtils;
 import org.geysermc.connect.utils.Logger;
 import org.geysermc.connect.utils.ServerInfo;
+import org.geysermc.connect.utils.SpawnSequence;
 import org.geysermc.geyser.GeyserImpl;
 import org.geysermc.geyser.network.GameProtocol;
 import org.geysermc.geyser.util.FileUtils;
@@ -41,8 +56,9 @@ import org.jetbrains.annotations.NotNull;
 import java.io.File;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.*;
 
 public class MasterServer {
@@ -61,91 +77,253 @@ public class MasterServer {
     @Getter
     private final Logger logger;
 
-    private final ScheduledExecutorService scheduledThreadPool;
+    @Getter
+    private final BackendRouter backendRouter;
 
     @Getter
-    private GeyserProxyBootstrap geyserProxy;
+    private final HealthPoller healthPoller;
 
     @Getter
-    private GeyserConnectConfig geyserConnectConfig;
+    private final LoginVerifier loginVerifier;
+
+    /**
+     * Meters transfers to each backend, null if disabled
+     */
+    @Getter
+    private final JoinQueue joinQueue;
+
+    /**
+     * Limits how often a single address or subnet can reach us, null if disabled
+     */
+    private final AdmissionController admission;
+
+    /**
+     * Limits how many pings we answer, null if disabled
+     */
+    private final PingLimiter pingLimiter;
+
+    @Getter
+    private final Metrics metrics = new Metrics();
+
+    private MetricsServer metricsServer;
+
+    /**
+     * Event loops for all network I/O, shared by the listener and the backend pings
+     */
+    @Getter
+    private final EventLoopGroup eventLoopGroup;
 
+    /**
+     * A single thread for all periodic work
+     */
     @Getter
-    private final DefaultEventLoopGroup eventLoopGroup = new DefaultEventLoopGroup(new DefaultThreadFactory("Geyser player thread"));
+    private final ScheduledExecutorService scheduler;
+
+    private final CountDownLatch shutdownLatch = new CountDownLatch(1);
+
+    /**
+     * Completed once Geyser's registries are loaded, logins are held until then
+     */
+    @Getter
+    private final CompletableFuture<Void> registriesReady = new CompletableFuture<>();
+
+    @Getter
+    private volatile GeyserProxyBootstrap geyserProxy;
+
+    @Getter
+    private GeyserConnectConfig geyserConnectConfig;
+
+    /**
+     * The pong we reply to queries with, rebuilt whenever the server info changes
+     * so the query path doesn't have to allocate anything
+     */
+    private volatile BedrockPong pong;
+
+    /**
+     * The latest health snapshot and local player count the pong was built from, guarded by this
+     */
+    private HealthSnapshot snapshot = HealthSnapshot.EMPTY;
+    private int localPlayers;
 
     public MasterServer() {
+        this(null);
+    }
+
+    /**
+     * @param config The config to use, or null to load it from config.yml
+     */
+    public MasterServer(GeyserConnectConfig config) {
         instance = this;
 
         logger = new Logger();
 
-        try {
-            File configFile = GeyserConnectFileUtils.fileOrCopiedFromResource(new File("config.yml"), "config.yml", (x) -> x);
-            this.geyserConnectConfig = FileUtils.loadConfig(configFile, GeyserConnectConfig.class);
-        } catch (IOException ex) {
-            logger.severe("Failed to read/create config.yml! Make sure it's up to date and/or readable+writable!", ex);
-            ex.printStackTrace();
+        long configStart = System.nanoTime();
+        if (config != null) {
+            this.geyserConnectConfig = config;
+        } else {
+            try {
+                File configFile = GeyserConnectFileUtils.fileOrCopiedFromResource(new File("config.yml"), "config.yml", (x) -> x);
+                this.geyserConnectConfig = FileUtils.loadConfig(configFile, GeyserConnectConfig.class);
+            } catch (IOException ex) {
+                logger.severe("Failed to read/create config.yml! Make sure it's up to date and/or readable+writable!", ex);
+                ex.printStackTrace();
+            }
+        }
+
+        // Everything from the MOTD to routing needs at least one server, so stop here rather than failing later
+        if (geyserConnectConfig.getServers() == null || geyserConnectConfig.getServers().isEmpty()) {
+            throw new IllegalStateException("server-info in config.yml needs at least one server to send players to");
         }
 
         logger.setDebug(geyserConnectConfig.isDebugMode());
+        logger.info("Loaded config in " + millisSince(configStart) + "ms");
+
+        int ioThreads = geyserConnectConfig.getIoThreads();
+        if (ioThreads <= 0) {
+            ioThreads = Runtime.getRuntime().availableProcessors();
+        }
+        this.eventLoopGroup = EventLoops.newEventLoopGroup(ioThreads);
+
+        // Periodic work is all short so one thread is plenty
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DefaultThreadFactory("Scheduler thread", true));
+
+        // Verify logins on their own threads
+        GeyserConnectConfig.LoginVerificationSection loginConfig = geyserConnectConfig.getLoginVerification();
+        this.loginVerifier = new LoginVerifier(loginConfig.getThreads(), loginConfig.getQueueSize(), geyserConnectConfig.isXboxAuth(), geyserConnectConfig.getClientData(),
+                loginConfig.getCacheSize(), loginConfig.getCacheTime(), metrics);
+        if (!geyserConnectConfig.isXboxAuth()) {
+            logger.warning("Xbox authentication is disabled, anyone can join with any name!");
+        }
 
-        // As this is only used for server querying, we don't need to handle many threads
-        this.scheduledThreadPool = Executors.newSingleThreadScheduledExecutor();
+        GeyserConnectConfig.AdmissionSection admissionConfig = geyserConnectConfig.getAdmission();
+        if (admissionConfig.isEnabled()) {
+            this.admission = new AdmissionController(admissionConfig.getAddressRate(), admissionConfig.getAddressBurst(),
+                    admissionConfig.getSubnetRate(), admissionConfig.getSubnetBurst(), admissionConfig.getGlobalRate());
+            scheduler.scheduleWithFixedDelay(admission::sweep, 30, 30, TimeUnit.SECONDS);
+            metrics.gauge("geyserconnect_admission_tracked", "Addresses and subnets currently being rate limited", admission::size);
+        } else {
+            this.admission = null;
+        }
+
+        GeyserConnectConfig.PingLimitSection pingConfig = geyserConnectConfig.getPingLimit();
+        if (pingConfig.isEnabled()) {
+            this.pingLimiter = new PingLimiter(pingConfig.getAddressRate(), pingConfig.getAddressBurst(), pingConfig.getGlobalRate());
+            scheduler.scheduleWithFixedDelay(pingLimiter::sweep, 30, 30, TimeUnit.SECONDS);
+        } else {
+            this.pingLimiter = null;
+        }
 
         // Grab serverinfo from config defaults
         serverInfo = new ServerInfo(geyserConnectConfig.getServerInfo());
 
-        // Start a timer to keep the thread running
-        Timer timer = new Timer();
-        TimerTask task = new TimerTask() { public void run() { } };
-        timer.scheduleAtFixedRate(task, 0L, 1000L);
+        // Setup routing between all the configured servers
+        GeyserConnectConfig.CircuitBreakerSection breakerConfig = geyserConnectConfig.getCircuitBreaker();
+        backendRouter = new BackendRouter(geyserConnectConfig.getServers(), geyserConnectConfig.getRouting(),
+                breakerConfig.getFailureRatio(), breakerConfig.getMinimumTransfers(),
+                TimeUnit.SECONDS.toMillis(breakerConfig.getFailureWindow()),
+                TimeUnit.SECONDS.toMillis(breakerConfig.getOpenTime()),
+                TimeUnit.SECONDS.toMillis(breakerConfig.getRejoinWindow()));
+        scheduler.scheduleWithFixedDelay(backendRouter::sweep, 30, 30, TimeUnit.SECONDS);
+        healthPoller = new HealthPoller(logger, backendRouter, eventLoopGroup, this::updateSessionInfo,
+                TimeUnit.SECONDS.toMillis(geyserConnectConfig.getMinUpdateInterval()),
+                TimeUnit.SECONDS.toMillis(geyserConnectConfig.getUpdateInterval()),
+                TimeUnit.SECONDS.toMillis(geyserConnectConfig.getMaxUpdateInterval()));
+
+        GeyserConnectConfig.JoinQueueSection joinQueueConfig = geyserConnectConfig.getJoinQueue();
+        if (joinQueueConfig.getRate() > 0) {
+            joinQueue = new JoinQueue(backendRouter, joinQueueConfig.getRate(), joinQueueConfig.getBurst(), metrics);
+            scheduler.scheduleAtFixedRate(joinQueue::drain, 50, 50, TimeUnit.MILLISECONDS);
+        } else {
+            joinQueue = null;
+        }
 
-        start(geyserConnectConfig.getPort());
+        metrics.gauge("geyserconnect_open_circuits", "Backends taken out of rotation by their circuit breaker",
+                () -> backendRouter.getBackends().stream().filter(backend -> backend.getCircuitBreaker().getState() != CircuitBreaker.State.CLOSED).count());
+        metrics.labeledGauge("geyserconnect_spawn_batch_bytes", "Size of the compressed spawn sequence for each protocol version, spawn profile, compression algorithm and level", () -> {
+            Map<String, Long> sizes = new LinkedHashMap<>();
+            for (SpawnSequence.BatchSize size : SpawnSequence.getBatchSizes()) {
+                sizes.put("protocol=\"" + size.protocolVersion() + "\",profile=\"" + size.profile().name().toLowerCase(Locale.ROOT)
+                        + "\",compression=\"" + size.algorithm().name().toLowerCase(Locale.ROOT)
+                        + "\",level=\"" + size.level() + "\"", (long) size.bytes());
+            }
+            return sizes;
+        });
+        metrics.gauge("geyserconnect_threads", "Live threads in the process", ProcessStats::threadCount);
+        metrics.gauge("geyserconnect_process_cpu_milliseconds", "CPU time used by the process", ProcessStats::cpuTimeMillis);
 
-        logger.start();
+        start(geyserConnectConfig.getPort(), ioThreads);
+
+        // Read commands on their own thread so the main thread can wait for shutdown
+        Thread consoleThread = new Thread(logger::start, "Console thread");
+        consoleThread.setDaemon(true);
+        consoleThread.start();
+    }
+
+    /**
+     * Block the calling thread until the server has shut down
+     */
+    public void awaitShutdown() {
+        try {
+            shutdownLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    private void start(int port) {
+    private void start(int port, int ioThreads) {
         logger.info("Starting...");
+        long startTime = System.nanoTime();
 
-        // Try to sync the server info
-        updateSessionInfo(serverInfo);
+        // Load Geyser's registries in the background, it is by far the slowest part of starting
+        String motd = serverInfo.getMotd();
+        int maxPlayers = serverInfo.getMaxPlayers();
+        Thread registryThread = new DefaultThreadFactory("Registry loading thread", true).newThread(() -> {
+            try {
+                createGeyserProxy(motd, maxPlayers);
+                prebuildSpawnSequence();
+                registriesReady.complete(null);
+            } catch (Throwable t) {
+                logger.error("Failed to load the Geyser registries, players won't be able to log in", t);
+                registriesReady.completeExceptionally(t);
+            }
+        });
+        registryThread.start();
 
-        // Schedule update task
-        scheduledThreadPool.scheduleWithFixedDelay(() -> updateSessionInfo(serverInfo),
-                geyserConnectConfig.getUpdateInterval(), geyserConnectConfig.getUpdateInterval(), TimeUnit.SECONDS);
+        updatePong();
+
+        // Keep the advertised player count in step with the players connected to us
+        scheduler.scheduleWithFixedDelay(this::refreshLocalPlayers, 1, 1, TimeUnit.SECONDS);
+
+        if (geyserConnectConfig.isQueryServer()) {
+            healthPoller.start();
+
+            // Sync the server info while everything else starts, we answer with the defaults until then
+            long probeStart = System.nanoTime();
+            healthPoller.poll().whenComplete((snapshot, throwable) -> {
+                logger.info("Queried " + healthPoller.getSnapshot().backends().size() + " servers in " + millisSince(probeStart) + "ms");
+
+                // Keep checking each server on its own interval from now on
+                healthPoller.schedule();
+            });
+        }
 
         InetSocketAddress bindAddress = new InetSocketAddress(geyserConnectConfig.getAddress(), port);
-        bdServer = new BedrockServer(bindAddress);
+        bdServer = new BedrockServer(bindAddress, ioThreads, eventLoopGroup);
 
         bdServer.setHandler(new BedrockServerEventHandler() {
             @Override
             public boolean onConnectionRequest(@NotNull InetSocketAddress address) {
-                return true; // Connection will be accepted
+                return admit(address);
             }
 
             @Override
             public BedrockPong onQuery(@NotNull InetSocketAddress address) {
-                String subMotd = serverInfo.getSubmotd();
-                if (subMotd == null || subMotd.isEmpty()) {
-                    subMotd = "GeyserConnect";
+                if (pingLimiter != null && !pingLimiter.tryAnswer(address)) {
+                    metrics.getDroppedPings().increment();
+                    return null; // Don't reply at all
                 }
-                String motd = serverInfo.getMotd();
-                boolean swapMotd = geyserConnectConfig.isSwapMotd();
-
-                BedrockPong bdPong = new BedrockPong();
-                // Static info
-                bdPong.setEdition("MCPE");
-                bdPong.setGameType("Survival");
-                bdPong.setIpv4Port(port);
-                // Data from serverInfo
-                bdPong.setMotd(!swapMotd ? motd : subMotd);
-                bdPong.setSubMotd(!swapMotd ? subMotd : motd);
-                bdPong.setPlayerCount(serverInfo.getPlayers());
-                bdPong.setMaximumPlayerCount(serverInfo.getMaxPlayers());
-                // Set version info
-                bdPong.setProtocolVersion(GameProtocol.DEFAULT_BEDROCK_CODEC.getProtocolVersion());
-                bdPong.setVersion(GameProtocol.DEFAULT_BEDROCK_CODEC.getMinecraftVersion());
-
-                return bdPong;
+                metrics.getPings().increment();
+                return pong;
             }
 
             @Override
@@ -154,55 +332,133 @@ public class MasterServer {
             }
         });
 
-        // Start server up
+        // Start server up, pings are answered straight away but logins wait for the registries
+        long bindStart = System.nanoTime();
         bdServer.bind().join();
+        logger.info("Server started on " + geyserConnectConfig.getAddress() + ":" + port + " in " + millisSince(bindStart) + "ms");
+
+        GeyserConnectConfig.MetricsSection metricsConfig = geyserConnectConfig.getMetrics();
+        if (metricsConfig.isEnabled()) {
+            try {
+                metricsServer = new MetricsServer(metrics, metricsConfig.getAddress(), metricsConfig.getPort());
+                metricsServer.start();
+                logger.info("Metrics available on http://" + metricsConfig.getAddress() + ":" + metricsConfig.getPort() + "/metrics");
+            } catch (IOException e) {
+                logger.error("Failed to start the metrics server", e);
+            }
+        }
 
-        // Create the Geyser instance
-        createGeyserProxy();
+        registriesReady.thenRun(() -> {
+            logger.info("Ready for logins " + millisSince(startTime) + "ms after starting");
+            logger.info("Running with " + ioThreads + " I/O threads, " + ProcessStats.threadCount() + " threads in total, "
+                    + ProcessStats.cpuTimeMillis() + "ms CPU time used during startup");
 
-        logger.info("Server started on " + geyserConnectConfig.getAddress() + ":" + port);
+            // Check how busy we are while nobody is connected
+            long startupCpuTime = ProcessStats.cpuTimeMillis();
+            scheduler.schedule(() -> logger.debug("CPU time used in the first minute after startup: "
+                    + (ProcessStats.cpuTimeMillis() - startupCpuTime) + "ms, " + ProcessStats.threadCount() + " threads"), 1, TimeUnit.MINUTES);
+        });
     }
 
-    // Taken and adapted from MCXboxBroadcast
-    // https://github.com/rtm516/MCXboxBroadcast/blob/master/bootstrap/standalone/src/main/java/com/rtm516/mcxboxbroadcast/bootstrap/standalone/StandaloneMain.java
-    private void updateSessionInfo(ServerInfo serverInfo) {
-        if (geyserConnectConfig.isQueryServer()) {
-            BedrockClient client = null;
-            try {
-                InetSocketAddress bindAddress = new InetSocketAddress("0.0.0.0", 0);
-                client = new BedrockClient(bindAddress);
-
-                client.bind().join();
-
-                InetSocketAddress addressToPing = new InetSocketAddress(serverInfo.getIp(), serverInfo.getPort());
-                BedrockPong pong = client.ping(addressToPing, 1500, TimeUnit.MILLISECONDS).get();
-
-                // Update the session information
-                serverInfo.setMotd(pong.getMotd());
-                serverInfo.setSubmotd(pong.getSubMotd());
-                serverInfo.setPlayers(pong.getPlayerCount());
-                serverInfo.setMaxPlayers(pong.getMaximumPlayerCount());
-
-                logger.debug("Updated server info");
-            } catch (InterruptedException | ExecutionException e) {
-                if (e.getCause() instanceof TimeoutException) {
-                    logger.error("Timed out while trying to ping server");
-                } else {
-                    logger.error("Failed to ping server", e);
-                }
-                // Set session info back to default
-                serverInfo.setMotd(geyserConnectConfig.getServerInfo().getMotd());
-                serverInfo.setSubmotd(geyserConnectConfig.getServerInfo().getSubmotd());
-                serverInfo.setPlayers(geyserConnectConfig.getServerInfo().getPlayers());
-                serverInfo.setMaxPlayers(geyserConnectConfig.getServerInfo().getMaxPlayers());
-
-                logger.debug("Set server info back to default");
-            } finally {
-                if (client != null) {
-                    client.close();
-                }
-            }
+    private static long millisSince(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Check an address against the admission limits before doing any work for it
+     *
+     * @param address The address a connection request came from
+     * @return If it should be handled
+     */
+    private boolean admit(InetSocketAddress address) {
+        if (admission == null || admission.tryAdmit(address)) {
+            return true;
+        }
+        metrics.getRejectedConnections().increment();
+        return false;
+    }
+
+    /**
+     * Update the server info once a poll has finished, taking the MOTD
+     * from the primary backend and the player counts from every healthy backend
+     *
+     * @param snapshot The new health snapshot
+     */
+    private synchronized void updateSessionInfo(HealthSnapshot snapshot) {
+        this.snapshot = snapshot;
+
+        BackendHealth health = snapshot.get(backendRouter.getBackends().get(0));
+        if (health != null && health.online()) {
+            // Update the session information
+            serverInfo.setMotd(health.motd());
+            serverInfo.setSubmotd(health.subMotd());
+
+            logger.debug("Updated server info");
+        } else {
+            // Set session info back to default
+            serverInfo.setMotd(geyserConnectConfig.getServerInfo().getMotd());
+            serverInfo.setSubmotd(geyserConnectConfig.getServerInfo().getSubmotd());
+
+            logger.debug("Set server info back to default");
+        }
+
+        updatePong();
+    }
+
+    /**
+     * Rebuild the pong if players have joined or been transferred since it was last built
+     */
+    private synchronized void refreshLocalPlayers() {
+        if (metrics.getLocalPlayers() != localPlayers) {
+            updatePong();
+        }
+    }
+
+    /**
+     * Rebuild the cached pong from the current server info and player counts
+     */
+    private synchronized void updatePong() {
+        localPlayers = metrics.getLocalPlayers();
+
+        ServerInfo defaults = geyserConnectConfig.getServerInfo();
+        PlayerCounts counts = PlayerCounts.aggregate(snapshot, defaults.getPlayers(), defaults.getMaxPlayers(), localPlayers);
+        serverInfo.setPlayers(counts.players());
+        serverInfo.setMaxPlayers(counts.maxPlayers());
+
+        // Publish the new pong, it is never modified after this point so the ping path needs no locks
+        pong = createPong(serverInfo, geyserConnectConfig.getPort(), geyserConnectConfig.isSwapMotd());
+    }
+
+    /**
+     * Create a pong to reply to queries with
+     *
+     * @param serverInfo The server info to take the MOTD and player counts from
+     * @param port The port we are listening on
+     * @param swapMotd If the MOTD and Sub-MOTD should be swapped
+     * @return A new pong
+     */
+    public static BedrockPong createPong(ServerInfo serverInfo, int port, boolean swapMotd) {
+        String subMotd = serverInfo.getSubmotd();
+        if (subMotd == null || subMotd.isEmpty()) {
+            subMotd = "GeyserConnect";
         }
+        String motd = serverInfo.getMotd();
+
+        BedrockPong bdPong = new BedrockPong();
+        // Static info
+        bdPong.setEdition("MCPE");
+        bdPong.setGameType("Survival");
+        bdPong.setIpv4Port(port);
+        // Data from serverInfo
+        bdPong.setMotd(!swapMotd ? motd : subMotd);
+        bdPong.setSubMotd(!swapMotd ? subMotd : motd);
+        bdPong.setPlayerCount(serverInfo.getPlayers());
+        bdPong.setMaximumPlayerCount(serverInfo.getMaxPlayers());
+        // Set version info
+        bdPong.setProtocolVersion(GameProtocol.DEFAULT_BEDROCK_CODEC.getProtocolVersion());
+        bdPong.setVersion(GameProtocol.DEFAULT_BEDROCK_CODEC.getMinecraftVersion());
+
+        return bdPong;
     }
 
     public void shutdown() {
@@ -211,20 +467,59 @@ public class MasterServer {
 
         shutdownGeyserProxy();
 
-        scheduledThreadPool.shutdown();
+        scheduler.shutdown();
+        healthPoller.close();
+        loginVerifier.shutdown();
+
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+
+        eventLoopGroup.shutdownGracefully();
+        shutdownLatch.countDown();
         System.exit(0);
     }
 
-    public void createGeyserProxy() {
+    /**
+     * Load Geyser, which fills the registries the spawn sequence is built from
+     *
+     * @param motd The MOTD to give Geyser
+     * @param maxPlayers The max player count to give Geyser
+     */
+    private void createGeyserProxy(String motd, int maxPlayers) {
         if (geyserProxy == null) {
             // Make sure Geyser doesn't start the listener
             GeyserImpl.setShouldStartListener(false);
 
-            this.geyserProxy = new GeyserProxyBootstrap();
+            GeyserConnectConfig.GeyserConfigSection geyserConfig = geyserConnectConfig.getGeyser();
+            long start = System.nanoTime();
+            long threadsBefore = ProcessStats.threadCount();
+            long heapBefore = ProcessStats.heapUsedBytes();
+
+            this.geyserProxy = new GeyserProxyBootstrap(motd, maxPlayers, geyserConfig.isDebugMode(), geyserConfig.getBootMode());
             geyserProxy.onEnable();
+
+            logger.info("Loaded Geyser (" + geyserConfig.getBootMode().name().toLowerCase(Locale.ROOT) + " boot) in "
+                    + millisSince(start) + "ms, using "
+                    + (ProcessStats.heapUsedBytes() - heapBefore) / (1024 * 1024) + "MB of heap and "
+                    + (ProcessStats.threadCount() - threadsBefore) + " more threads");
         }
     }
 
+    /**
+     * Compress the spawn sequence for every supported version before logins are let through,
+     * rather than on an event loop when the first player on each version joins
+     */
+    private void prebuildSpawnSequence() {
+        GeyserConnectConfig.CompressionSection compression = geyserConnectConfig.getCompression();
+        long start = System.nanoTime();
+
+        SpawnSequence.prebuild(eventLoopGroup.next(), geyserConnectConfig.getSpawnProfile(),
+                compression.getAlgorithm().getAlgorithm(), compression.getAlgorithm().getLevel(compression.getLevel()));
+
+        logger.info("Built the spawn sequence for " + GameProtocol.SUPPORTED_BEDROCK_CODECS.size() + " versions in " + millisSince(start) + "ms");
+    }
+
     public void shutdownGeyserProxy() {
         if (geyserProxy != null) {
             geyserProxy.onDisable();
@@ -25,32 +25,27 @@
 
 package org.geysermc.connect;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectReader;
-import com.fasterxml.jackson.databind.node.JsonNodeType;
-import com.nimbusds.jose.JWSObject;
-import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
-import com.nimbusds.jose.shaded.json.JSONArray;
 import com.nukkitx.network.util.DisconnectReason;
 import com.nukkitx.protocol.bedrock.BedrockPacketCodec;
 import com.nukkitx.protocol.bedrock.BedrockServerSession;
 import com.nukkitx.protocol.bedrock.handler.BedrockPacketHandler;
 import com.nukkitx.protocol.bedrock.packet.*;
-import com.nukkitx.protocol.bedrock.util.EncryptionUtils;
+import org.geysermc.connect.backend.Backend;
+import org.geysermc.connect.backend.JoinQueue;
+import org.geysermc.connect.login.ClientDataMode;
+import org.geysermc.connect.login.LoginResult;
+import org.geysermc.connect.metrics.Metrics;
+import org.geysermc.connect.utils.CompressionMode;
 import org.geysermc.connect.utils.Player;
-import org.geysermc.connect.utils.ServerInfo;
+import org.geysermc.connect.utils.SessionState;
 import com.nukkitx.protocol.bedrock.data.PacketCompressionAlgorithm;
 import org.geysermc.geyser.network.GameProtocol;
-import org.geysermc.geyser.session.auth.AuthData;
-import org.geysermc.geyser.session.auth.BedrockClientData;
 
-import java.io.IOException;
-import java.security.interfaces.ECPublicKey;
-import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 public class PacketHandler implements BedrockPacketHandler {
 
@@ -58,35 +53,57 @@ public class PacketHandler implements BedrockPacketHandler {
     private final MasterServer masterServer;
 
     private Player player;
+    private String playerName;
+    private SessionState state;
 
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    // Timestamps from System.nanoTime() for the join metrics
+    private long networkSettingsTime;
+    private long loginSuccessTime;
 
     public PacketHandler(BedrockServerSession session, MasterServer masterServer) {
         this.session = session;
         this.masterServer = masterServer;
 
+        setState(SessionState.CONNECTING);
         session.addDisconnectHandler(this::disconnect);
     }
 
     public void disconnect(DisconnectReason reason) {
-        if (player != null) {
-            masterServer.getLogger().info(player.getAuthData().name() + " has disconnected from the master server (" + reason + ")");
+        setState(null);
+        if (playerName != null) {
+            masterServer.getLogger().info(playerName + " has disconnected from the master server (" + reason + ")");
         }
     }
 
+    private void setState(SessionState state) {
+        masterServer.getMetrics().moveSession(this.state, state);
+        this.state = state;
+    }
+
     private boolean checkedProtocol = false;
 
+    /**
+     * Clients that don't request network settings always use zlib
+     */
+    private PacketCompressionAlgorithm compression = PacketCompressionAlgorithm.ZLIB;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
     @Override
     public boolean handle(RequestNetworkSettingsPacket packet) {
+        networkSettingsTime = System.nanoTime();
         if (checkProtocol(packet.getProtocolVersion())) {
-            PacketCompressionAlgorithm algorithm = PacketCompressionAlgorithm.ZLIB;
+            GeyserConnectConfig.CompressionSection config = masterServer.getGeyserConnectConfig().getCompression();
+            CompressionMode mode = config.getAlgorithm();
+            compression = mode.getAlgorithm();
+            compressionLevel = mode.getLevel(config.getLevel());
 
             NetworkSettingsPacket responsePacket = new NetworkSettingsPacket();
-            responsePacket.setCompressionAlgorithm(algorithm);
-            responsePacket.setCompressionThreshold(512);
+            responsePacket.setCompressionAlgorithm(compression);
+            responsePacket.setCompressionThreshold(config.getThreshold());
             session.sendPacketImmediately(responsePacket);
 
-            session.setCompression(algorithm);
+            session.setCompression(compression);
+            session.setCompressionLevel(compressionLevel);
         }
         return true;
     }
@@ -108,6 +125,7 @@ public class PacketHandler implements BedrockPacketHandler {
             session.sendPacket(status);
             session.disconnect(message);
 
+            masterServer.getMetrics().getRejectedProtocols().increment();
             return false;
         }
 
@@ -120,6 +138,11 @@ public class PacketHandler implements BedrockPacketHandler {
     public boolean handle(LoginPacket packet) {
         masterServer.getLogger().debug("Login: " + packet.toString());
 
+        Metrics metrics = masterServer.getMetrics();
+        if (networkSettingsTime != 0) {
+            metrics.getNetworkSettingsToLogin().recordSince(networkSettingsTime);
+        }
+
         if (!checkedProtocol) {
             if (!checkProtocol(packet.getProtocolVersion())) {
                 return false;
@@ -127,100 +150,82 @@ public class PacketHandler implements BedrockPacketHandler {
             checkedProtocol = true;
         }
 
-        // Read the raw chain data
-        JsonNode rawChainData;
-        try {
-            rawChainData = OBJECT_MAPPER.readTree(packet.getChainData().toByteArray());
-        } catch (IOException e) {
-            throw new AssertionError("Unable to read chain data!");
-        }
-
-        // Get the parsed chain data
-        JsonNode chainData = rawChainData.get("chain");
-        if (chainData.getNodeType() != JsonNodeType.ARRAY) {
-            throw new AssertionError("Invalid chain data!");
-        }
+        // Verify the login off the network thread and carry on here once it's done
+        setState(SessionState.LOGGING_IN);
+        long verifyStart = System.nanoTime();
+        CompletableFuture<LoginResult> verified = masterServer.getLoginVerifier().verify(packet);
+        verified.whenComplete((result, throwable) -> metrics.getLoginVerification().recordSince(verifyStart));
 
-        try {
-            // Convert the chainData to a JSONArray
-            ObjectReader reader = OBJECT_MAPPER.readerFor(new TypeReference<List<String>>() { });
-            JSONArray array = new JSONArray();
-            array.addAll(reader.readValue(chainData));
-
-            // Verify the chain data
-            if (!EncryptionUtils.verifyChain(array)) {
-                // Disconnect the client
-                session.disconnect("disconnectionScreen.internalError.cantConnect");
-                throw new AssertionError("Failed to login, due to invalid chain data!");
+        // Logins can't finish until Geyser's registries are loaded, which only matters just after starting
+        verified.thenCombine(masterServer.getRegistriesReady(), (result, ignored) -> result).whenCompleteAsync((result, throwable) -> {
+            if (session.isClosed()) {
+                return;
             }
 
-            // Parse the signed jws object
-            JWSObject jwsObject;
-            jwsObject = JWSObject.parse(chainData.get(chainData.size() - 1).asText());
-
-            // Read the JWS payload
-            JsonNode payload = OBJECT_MAPPER.readTree(jwsObject.getPayload().toBytes());
-
-            // Check the identityPublicKey is there
-            if (payload.get("identityPublicKey").getNodeType() != JsonNodeType.STRING) {
-                throw new AssertionError("Missing identity public key!");
-            }
-
-            // Create an ECPublicKey from the identityPublicKey
-            ECPublicKey identityPublicKey = EncryptionUtils.generateKey(payload.get("identityPublicKey").textValue());
-
-            // Get the skin data to validate the JWS token
-            JWSObject skinData = JWSObject.parse(packet.getSkinData().toString());
-            if (skinData.verify(new DefaultJWSVerifierFactory().createJWSVerifier(skinData.getHeader(), identityPublicKey))) {
-                // Make sure the client sent over the username, xuid and other info
-                if (payload.get("extraData").getNodeType() != JsonNodeType.OBJECT) {
-                    throw new AssertionError("Missing client data");
+            if (throwable != null) {
+                metrics.getFailedLogins().increment();
+                Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                if (cause instanceof RejectedExecutionException) {
+                    masterServer.getLogger().warning("Too many logins waiting for verification, turning away " + session.getAddress());
+                    session.disconnect("disconnectionScreen.serverFull");
+                } else {
+                    masterServer.getLogger().error("Failed to login " + session.getAddress(), cause);
+                    session.disconnect("disconnectionScreen.internalError.cantConnect");
                 }
+                return;
+            }
 
-                // Fetch the client data
-                JsonNode extraData = payload.get("extraData");
+            // Create a new player and add it to the players list
+            player = new Player(result.authData(), session);
+            playerName = result.authData().name();
 
-                AuthData authData = new AuthData(
-                        extraData.get("displayName").asText(),
-                        UUID.fromString(extraData.get("identity").asText()),
-                        extraData.get("XUID").asText()
-                );
+            // Coming straight back means the last transfer probably failed
+            if (masterServer.getBackendRouter().onLogin(result.authData().xuid())) {
+                masterServer.getLogger().debug(playerName + " came back soon after being transferred");
+                metrics.getQuickRejoins().increment();
+            }
 
-                // Create a new player and add it to the players list
-                player = new Player(authData, session);
+            player.setChainData(result.chainData());
 
-                player.setChainData(chainData);
+            // Store the client data, decoded or not depending on the config
+            player.setClientData(result.rawClientData(), result.clientData());
 
-                // Store the full client data
-                player.setClientData(OBJECT_MAPPER.convertValue(OBJECT_MAPPER.readTree(skinData.getPayload().toBytes()), BedrockClientData.class));
-                player.getClientData().setOriginalString(packet.getSkinData().toString());
+            // Tell the client we have logged in successfully
+            PlayStatusPacket playStatusPacket = new PlayStatusPacket();
+            playStatusPacket.setStatus(PlayStatusPacket.Status.LOGIN_SUCCESS);
+            session.sendPacket(playStatusPacket);
 
-                // Tell the client we have logged in successfully
-                PlayStatusPacket playStatusPacket = new PlayStatusPacket();
-                playStatusPacket.setStatus(PlayStatusPacket.Status.LOGIN_SUCCESS);
-                session.sendPacket(playStatusPacket);
+            // Tell the client there are no resourcepacks
+            ResourcePacksInfoPacket resourcePacksInfo = new ResourcePacksInfoPacket();
+            session.sendPacket(resourcePacksInfo);
+            loginSuccessTime = System.nanoTime();
+            setState(SessionState.LOADING);
 
-                // Tell the client there are no resourcepacks
-                ResourcePacksInfoPacket resourcePacksInfo = new ResourcePacksInfoPacket();
-                session.sendPacket(resourcePacksInfo);
-            } else {
-                throw new AssertionError("Invalid identity public key!");
+            // Nothing needs the client data past this point unless we were told to keep it
+            if (masterServer.getGeyserConnectConfig().getClientData() == ClientDataMode.LAZY) {
+                player.releaseClientData();
             }
-        } catch (Exception e) {
-            // Disconnect the client
-            session.disconnect("disconnectionScreen.internalError.cantConnect");
-            throw new AssertionError("Failed to login", e);
-        }
+        }, session.getEventLoop());
 
-        return false;
+        return true;
     }
 
     @Override
     public boolean handle(ResourcePackClientResponsePacket packet) {
+        // The player only exists once the login has been verified
+        if (state != SessionState.LOADING) {
+            return false;
+        }
+
         switch (packet.getStatus()) {
             case COMPLETED -> {
                 masterServer.getLogger().info("Logged in " + player.getAuthData().name() + " (" + player.getAuthData().xuid() + ", " + player.getAuthData().uuid() + ")");
-                player.sendStartGame();
+                masterServer.getMetrics().getResourcePackHandshake().recordSince(loginSuccessTime);
+
+                long startGameStart = System.nanoTime();
+                player.sendStartGame(masterServer.getGeyserConnectConfig().getSpawnProfile(), compression, compressionLevel);
+                masterServer.getMetrics().getStartGame().recordSince(startGameStart);
+                setState(SessionState.SPAWNING);
             }
             case HAVE_ALL_PACKS -> {
                 ResourcePackStackPacket stack = new ResourcePackStackPacket();
@@ -238,12 +243,61 @@ public class PacketHandler implements BedrockPacketHandler {
 
     @Override
     public boolean handle(SetLocalPlayerAsInitializedPacket packet) {
-        masterServer.getLogger().debug("Player initialized: " + player.getAuthData().name());
+        if (state != SessionState.SPAWNING) {
+            return false;
+        }
 
-        ServerInfo server = MasterServer.getInstance().getServerInfo();
-        // Send the player to the wanted server
-        player.sendToServer(server);
+        masterServer.getLogger().debug("Player initialized: " + player.getAuthData().name());
+        long initializedTime = System.nanoTime();
+
+        // Send the player on once a server has room, picking the server only then in case one went down while they waited
+        String xuid = player.getAuthData().xuid();
+        JoinQueue joinQueue = masterServer.getJoinQueue();
+        if (joinQueue == null) {
+            transfer(masterServer.getBackendRouter().route(xuid), initializedTime);
+        } else if (joinQueue.submit(xuid, session, backend -> transfer(backend, initializedTime))) {
+            masterServer.getLogger().debug("Queued " + player.getAuthData().name());
+            setState(SessionState.QUEUED);
+        }
 
         return false;
     }
+
+    private void transfer(Backend backend, long initializedTime) {
+        if (session.isClosed()) {
+            return;
+        }
+
+        masterServer.getLogger().debug("Sending " + player.getAuthData().name() + " to " + backend);
+        player.sendToServer(backend.getServerInfo());
+        masterServer.getBackendRouter().onTransferred(player.getAuthData().xuid(), backend);
+
+        masterServer.getMetrics().getInitializedToTransfer().recordSince(initializedTime);
+        masterServer.getMetrics().getTransfers().increment();
+
+        release();
+    }
+
+    /**
+     * Drop everything held for the player once they have been transferred and
+     * close the session if the client doesn't do it in time
+     */
+    private void release() {
+        player = null;
+        setState(SessionState.TRANSFERRED);
+
+        // Ignore anything else the client sends before it leaves
+        session.setPacketHandler(NoopPacketHandler.INSTANCE);
+
+        long gracePeriod = masterServer.getGeyserConnectConfig().getTransferGracePeriod();
+        session.getEventLoop().schedule(() -> {
+            if (!session.isClosed()) {
+                session.disconnect();
+            }
+        }, gracePeriod, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class NoopPacketHandler implements BedrockPacketHandler {
+        private static final NoopPacketHandler INSTANCE = new NoopPacketHandler();
+    }
 }
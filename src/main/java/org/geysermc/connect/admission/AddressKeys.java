@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.admission;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+
+/**
+ * Turns addresses into the 64 bit keys used by the rate limit tables
+ */
+final class AddressKeys {
+
+    /**
+     * Prefix used to keep IPv4 keys apart from IPv6 ones, matching the IPv4-mapped IPv6 form
+     */
+    private static final long IPV4_PREFIX = 0xFFFFL << 32;
+
+    private AddressKeys() {
+    }
+
+    /**
+     * @param address The address to get the key for
+     * @return A key for the single address
+     */
+    static long address(InetAddress address) {
+        if (address instanceof Inet4Address) {
+            // The hash code of an IPv4 address is the address itself
+            return IPV4_PREFIX | (address.hashCode() & 0xFFFFFFFFL);
+        }
+
+        byte[] bytes = address.getAddress();
+        return readLong(bytes, 0) ^ Long.rotateLeft(readLong(bytes, 8) * 0x9E3779B97F4A7C15L, 31);
+    }
+
+    /**
+     * @param address The address to get the key for
+     * @return A key for the /24 (IPv4) or /64 (IPv6) subnet the address is in
+     */
+    static long subnet(InetAddress address) {
+        if (address instanceof Inet4Address) {
+            return IPV4_PREFIX | (address.hashCode() & 0xFFFFFF00L);
+        }
+
+        return readLong(address.getAddress(), 0);
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+}
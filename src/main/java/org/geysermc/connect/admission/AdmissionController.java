@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.admission;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * Decides if a connection or query from an address should be handled at all,
+ * limiting both single addresses and the /24 (IPv4) or /64 (IPv6) subnet they are in
+ */
+public class AdmissionController {
+
+    private final TokenBucketTable addresses;
+    private final TokenBucketTable subnets;
+    private final GlobalRateLimiter global;
+
+    /**
+     * @param addressRate Requests allowed per second from one address
+     * @param addressBurst How many requests one address can send at once after being idle
+     * @param subnetRate Requests allowed per second from one subnet
+     * @param subnetBurst How many requests one subnet can send at once after being idle
+     * @param globalRate Requests allowed per second in total, 0 for no limit
+     */
+    public AdmissionController(double addressRate, double addressBurst, double subnetRate, double subnetBurst, int globalRate) {
+        this.addresses = new TokenBucketTable(addressRate, addressBurst);
+        this.subnets = new TokenBucketTable(subnetRate, subnetBurst);
+        this.global = new GlobalRateLimiter(globalRate);
+    }
+
+    /**
+     * Check if a packet from the given address should be handled
+     *
+     * @param socketAddress The address the packet came from
+     * @return If the packet is within the limits
+     */
+    public boolean tryAdmit(InetSocketAddress socketAddress) {
+        long now = System.nanoTime();
+
+        // Check the global limit first so requests over it never add entries to the tables,
+        // which bounds how much memory a flood from spoofed addresses can use
+        if (!global.tryAcquire(now)) {
+            return false;
+        }
+
+        InetAddress address = socketAddress.getAddress();
+        return addresses.tryAcquire(AddressKeys.address(address), now)
+                && subnets.tryAcquire(AddressKeys.subnet(address), now);
+    }
+
+    /**
+     * Forget about addresses that haven't been limited recently
+     */
+    public void sweep() {
+        long now = System.nanoTime();
+        addresses.sweep(now);
+        subnets.sweep(now);
+    }
+
+    /**
+     * @return The amount of addresses and subnets being tracked
+     */
+    public int size() {
+        return addresses.size() + subnets.size();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock free limit on how many events are allowed per second in total, checked before
+ * any per address state is touched so spoofed floods can't grow the per address tables
+ */
+public class GlobalRateLimiter {
+
+    private final int rate;
+
+    /**
+     * The current second in the high half and the events allowed in it in the low half
+     */
+    private final AtomicLong window = new AtomicLong();
+
+    /**
+     * @param rate Events allowed per second, 0 for no limit
+     */
+    public GlobalRateLimiter(int rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * Count an event if it is within the limit
+     *
+     * @param now The current time from {@link System#nanoTime()}
+     * @return If the event is allowed
+     */
+    public boolean tryAcquire(long now) {
+        if (rate <= 0) {
+            return true;
+        }
+
+        int second = (int) (now / 1_000_000_000L);
+        while (true) {
+            long current = window.get();
+            long count = (int) (current >>> 32) == second ? current & 0xFFFFFFFFL : 0;
+            if (count >= rate) {
+                return false;
+            }
+            if (window.compareAndSet(current, ((long) second << 32) | (count + 1))) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.admission;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Limits how many unconnected pings we answer, both per source address and in total,
+ * so a ping flood costs as little as possible
+ */
+public class PingLimiter {
+
+    private final TokenBucketTable sources;
+    private final GlobalRateLimiter global;
+
+    /**
+     * @param addressRate Pings answered per second for one address
+     * @param addressBurst How many pings one address can send at once after being idle
+     * @param globalRate Pings answered per second in total, 0 for no limit
+     */
+    public PingLimiter(double addressRate, double addressBurst, int globalRate) {
+        this.sources = new TokenBucketTable(addressRate, addressBurst);
+        this.global = new GlobalRateLimiter(globalRate);
+    }
+
+    /**
+     * Check if a ping should be answered
+     *
+     * @param socketAddress The address the ping came from
+     * @return If the ping is within the limits
+     */
+    public boolean tryAnswer(InetSocketAddress socketAddress) {
+        long now = System.nanoTime();
+
+        // Check the global limit first so pings over it never touch the per source table
+        if (!global.tryAcquire(now)) {
+            return false;
+        }
+
+        return sources.tryAcquire(AddressKeys.address(socketAddress.getAddress()), now);
+    }
+
+    /**
+     * Forget about addresses that haven't pinged recently
+     */
+    public void sweep() {
+        sources.sweep(System.nanoTime());
+    }
+
+    /**
+     * @return The amount of addresses being tracked
+     */
+    public int size() {
+        return sources.size();
+    }
+}
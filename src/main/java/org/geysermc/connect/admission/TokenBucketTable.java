@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.admission;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+/**
+ * Token buckets keyed by a long, split over several locks so lookups from
+ * different I/O threads rarely wait on each other
+ */
+public class TokenBucketTable {
+
+    private static final int STRIPES = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    /**
+     * Tokens added per nanosecond
+     */
+    private final double rate;
+    private final double burst;
+
+    /**
+     * @param rate Tokens added per second
+     * @param burst The most tokens a bucket can hold
+     */
+    public TokenBucketTable(double rate, double burst) {
+        this.rate = rate / 1_000_000_000D;
+        this.burst = Math.max(1, burst);
+
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Take a token from the bucket for the given key
+     *
+     * @param key The key of the bucket
+     * @param now The current time from {@link System#nanoTime()}
+     * @return If there was a token to take
+     */
+    public boolean tryAcquire(long key, long now) {
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(burst, now);
+                stripe.buckets.put(key, bucket);
+            } else {
+                bucket.refill(now);
+            }
+
+            if (bucket.tokens < 1) {
+                return false;
+            }
+            bucket.tokens--;
+            return true;
+        }
+    }
+
+    /**
+     * Remove buckets that have refilled completely, as they behave the same as a new one
+     *
+     * @param now The current time from {@link System#nanoTime()}
+     */
+    public void sweep(long now) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                ObjectIterator<Long2ObjectMap.Entry<Bucket>> iterator = stripe.buckets.long2ObjectEntrySet().fastIterator();
+                while (iterator.hasNext()) {
+                    Bucket bucket = iterator.next().getValue();
+                    bucket.refill(now);
+                    if (bucket.tokens >= burst) {
+                        iterator.remove();
+                    }
+                }
+                stripe.buckets.trim();
+            }
+        }
+    }
+
+    /**
+     * @return The amount of buckets currently held
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.buckets.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripe(long key) {
+        // Spread the key so neighbouring addresses don't share a lock
+        key *= 0x9E3779B97F4A7C15L;
+        return stripes[(int) (key >>> 58)];
+    }
+
+    private static final class Stripe {
+        private final Long2ObjectOpenHashMap<Bucket> buckets = new Long2ObjectOpenHashMap<>();
+    }
+
+    private final class Bucket {
+        private double tokens;
+        private long lastRefill;
+
+        private Bucket(double tokens, long lastRefill) {
+            this.tokens = tokens;
+            this.lastRefill = lastRefill;
+        }
+
+        private void refill(long now) {
+            long elapsed = now - lastRefill;
+            if (elapsed > 0) {
+                tokens = Math.min(burst, tokens + elapsed * rate);
+                lastRefill = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.backend;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The time between health checks of a single backend. It backs off exponentially while the backend
+ * is down, tightens while its player count is changing quickly and relaxes while it is stable.
+ */
+class AdaptiveInterval {
+
+    /**
+     * How far each delay is randomly moved either way so backends aren't all pinged at once
+     */
+    private static final double JITTER = 0.1;
+
+    /**
+     * How much the player count has to change between checks to count as changing quickly
+     */
+    private static final double RAPID_CHANGE = 0.05;
+    private static final int RAPID_CHANGE_MIN_PLAYERS = 5;
+
+    private final long min;
+    private final long base;
+    private final long max;
+
+    private long current;
+    private int lastPlayers = -1;
+    private boolean failing;
+
+    /**
+     * @param min The shortest interval in milliseconds
+     * @param base The interval to start at and go back to after a backend recovers in milliseconds
+     * @param max The longest interval in milliseconds
+     */
+    AdaptiveInterval(long min, long base, long max) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.base = Math.min(this.max, Math.max(this.min, base));
+        this.current = this.base;
+    }
+
+    /**
+     * Work out the next interval after a successful health check
+     *
+     * @param players The player count the backend reported
+     * @return The jittered delay until the next check in milliseconds
+     */
+    long onSuccess(int players) {
+        if (failing) {
+            // Back to normal now it has recovered
+            failing = false;
+            current = base;
+        } else if (lastPlayers >= 0 && Math.abs(players - lastPlayers) >= Math.max(RAPID_CHANGE_MIN_PLAYERS, lastPlayers * RAPID_CHANGE)) {
+            current = Math.max(min, current / 2);
+        } else {
+            current = Math.min(max, current + current / 4);
+        }
+
+        lastPlayers = players;
+        return jittered();
+    }
+
+    /**
+     * Work out the next interval after a failed health check
+     *
+     * @return The jittered delay until the next check in milliseconds
+     */
+    long onFailure() {
+        if (failing) {
+            current = Math.min(max, current * 2);
+        }
+        failing = true;
+        lastPlayers = -1;
+        return jittered();
+    }
+
+    /**
+     * @return A random delay up to the base interval, to spread out the first checks
+     */
+    long initialDelay() {
+        return ThreadLocalRandom.current().nextLong(base) + 1;
+    }
+
+    private long jittered() {
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-JITTER, JITTER);
+        return Math.max(1, (long) (current * factor));
+    }
+}
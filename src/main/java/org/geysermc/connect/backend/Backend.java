@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.backend;
+
+import lombok.Getter;
+import org.geysermc.connect.utils.ServerInfo;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+@Getter
+public class Backend {
+
+    private final ServerInfo serverInfo;
+
+    private final int weight;
+
+    /**
+     * Players we have sent to this backend since starting
+     */
+    private final AtomicLong transfers = new AtomicLong();
+
+    /**
+     * How many of the transfers had happened when the ping behind the last reported player count was sent,
+     * those are already part of that count
+     */
+    private final AtomicLong reportedTransfers = new AtomicLong();
+
+    /**
+     * Player count as last reported by the backend itself
+     */
+    private volatile int reportedPlayers;
+
+    /**
+     * If the backend answered its last health check
+     */
+    private volatile boolean available = true;
+
+    /**
+     * Takes the backend out of rotation while it is failing
+     */
+    private final CircuitBreaker circuitBreaker;
+
+    public Backend(ServerInfo serverInfo, CircuitBreaker circuitBreaker) {
+        this.serverInfo = serverInfo;
+        this.circuitBreaker = circuitBreaker;
+        this.weight = Math.max(1, serverInfo.getWeight());
+        this.reportedPlayers = serverInfo.getPlayers();
+    }
+
+    /**
+     * Get the current load of this backend relative to its weight
+     *
+     * @return The load to weight ratio
+     */
+    public double getLoad() {
+        return (reportedPlayers + transfers.get() - reportedTransfers.get()) / (double) weight;
+    }
+
+    /**
+     * Count a player we are sending to this backend
+     */
+    public void onTransfer() {
+        transfers.incrementAndGet();
+    }
+
+    /**
+     * Update the player count reported by the backend, the reported count only
+     * includes the players we had transferred before the ping was sent
+     *
+     * @param players The reported player count
+     * @param transfersBefore The transfer count from {@link #getTransfers()} when the ping was sent
+     */
+    public void setReportedPlayers(int players, long transfersBefore) {
+        this.reportedPlayers = players;
+        // Replies can arrive out of order, so never go back to an older count
+        this.reportedTransfers.accumulateAndGet(transfersBefore, Math::max);
+    }
+
+    void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    @Override
+    public String toString() {
+        return serverInfo.getIp() + ":" + serverInfo.getPort();
+    }
+}
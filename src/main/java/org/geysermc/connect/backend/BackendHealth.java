@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.backend;
+
+/**
+ * The result of the last ping to a backend
+ *
+ * @param backend The backend that was pinged
+ * @param online If the backend answered the ping
+ * @param latency Round trip time of the ping in milliseconds, -1 if offline
+ * @param motd The MOTD the backend replied with
+ * @param subMotd The Sub-MOTD the backend replied with
+ * @param players The player count the backend replied with
+ * @param maxPlayers The max player count the backend replied with
+ */
+public record BackendHealth(Backend backend, boolean online, long latency, String motd, String subMotd, int players, int maxPlayers) {
+
+    public static BackendHealth offline(Backend backend) {
+        return new BackendHealth(backend, false, -1, null, null, 0, 0);
+    }
+}
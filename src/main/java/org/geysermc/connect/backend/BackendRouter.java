@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.backend;
+
+import org.geysermc.connect.utils.ServerInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+public class BackendRouter {
+
+    private final Backend[] backends;
+    private final RoutingMode mode;
+
+    /**
+     * The ring of available backends used for sticky routing, rebuilt whenever a backend goes up or down
+     */
+    private volatile ConsistentHashRing ring;
+
+    /**
+     * Where each player was last sent, so we notice them coming straight back.
+     * Old entries are removed by {@link #sweep()}.
+     */
+    private final Map<String, RecentTransfer> recentTransfers = new ConcurrentHashMap<>();
+    private final long rejoinWindow;
+
+    /**
+     * @param servers The backends to route between
+     * @param mode How to pick a backend for each player
+     * @param failureRatio The share of players sent to a backend within the failure window that have to come straight back to take it out of rotation
+     * @param minimumTransfers How many players have to be sent to a backend within the failure window before it can be taken out of rotation
+     * @param failureWindow How long transfers and quick rejoins are counted for in milliseconds
+     * @param openTime How long a failing backend stays out of rotation before being probed in milliseconds
+     * @param rejoinWindow How soon a player has to come back after a transfer to count as a failure in milliseconds
+     */
+    public BackendRouter(List<ServerInfo> servers, RoutingMode mode, double failureRatio, int minimumTransfers,
+                         long failureWindow, long openTime, long rejoinWindow) {
+        this.backends = new Backend[servers.size()];
+        for (int i = 0; i < backends.length; i++) {
+            backends[i] = new Backend(servers.get(i), new CircuitBreaker(failureRatio, minimumTransfers, failureWindow, openTime, rejoinWindow));
+        }
+
+        this.mode = mode;
+        this.ring = ConsistentHashRing.of(List.of(backends));
+
+        this.rejoinWindow = TimeUnit.MILLISECONDS.toNanos(rejoinWindow);
+    }
+
+    /**
+     * Pick a backend for the player and count the transfer against it.
+     * In sticky mode the same XUID always maps to the same backend while it is available,
+     * otherwise or if the player has no XUID the least loaded backend is used.
+     * Backends with an open circuit breaker are skipped in both cases.
+     * This never locks, see {@link #onTransferred(String, Backend)} for recording the transfer.
+     *
+     * @param xuid The XUID of the player
+     * @return The backend to send the player to
+     */
+    public Backend route(String xuid) {
+        return route(xuid, backend -> true);
+    }
+
+    /**
+     * Pick a backend for the player like {@link #route(String)}, but only out of the backends that have room.
+     * In sticky mode a player whose backend is available but has no room waits for it rather than being moved.
+     *
+     * @param xuid The XUID of the player
+     * @param hasRoom Checks if a backend can take the player right now
+     * @return The backend to send the player to, or null if the player has to wait
+     */
+    public Backend route(String xuid, Predicate<Backend> hasRoom) {
+        long now = System.nanoTime();
+
+        Backend backend = null;
+        if (mode == RoutingMode.STICKY && xuid != null && !xuid.isEmpty()) {
+            Backend sticky = ring.get(xuid);
+            if (sticky != null && sticky.getCircuitBreaker().canRoute(now)) {
+                if (!hasRoom.test(sticky)) {
+                    return null;
+                }
+                if (sticky.getCircuitBreaker().tryRoute(now)) {
+                    backend = sticky;
+                }
+            }
+        }
+
+        // Another player can claim a probe slot between picking a backend and routing to it,
+        // in which case that backend can't be routed to anymore and the next pick skips it
+        for (int i = 0; backend == null && i < backends.length; i++) {
+            Backend candidate = leastLoaded(now, hasRoom);
+            if (candidate == null) {
+                break;
+            }
+            if (candidate.getCircuitBreaker().tryRoute(now)) {
+                backend = candidate;
+            }
+        }
+
+        // Everything is down so there's no better choice than the first with room
+        for (int i = 0; backend == null && i < backends.length; i++) {
+            if (hasRoom.test(backends[i])) {
+                backend = backends[i];
+            }
+        }
+
+        if (backend != null) {
+            backend.onTransfer();
+        }
+        return backend;
+    }
+
+    /**
+     * Remember where a player was sent so a quick rejoin can be counted against that backend
+     *
+     * @param xuid The XUID of the player
+     * @param backend The backend they were sent to
+     */
+    public void onTransferred(String xuid, Backend backend) {
+        if (xuid != null && !xuid.isEmpty()) {
+            recentTransfers.put(xuid, new RecentTransfer(backend, System.nanoTime()));
+        }
+    }
+
+    /**
+     * Check if a player logging in was only just sent to a backend, which means
+     * the transfer most likely failed, and count it against that backend
+     *
+     * @param xuid The XUID of the player
+     * @return If the player came straight back
+     */
+    public boolean onLogin(String xuid) {
+        if (xuid == null || xuid.isEmpty()) {
+            return false;
+        }
+
+        RecentTransfer recent = recentTransfers.remove(xuid);
+        if (recent == null) {
+            return false;
+        }
+
+        long now = System.nanoTime();
+        if (now - recent.time() > rejoinWindow) {
+            return false;
+        }
+
+        recent.backend().getCircuitBreaker().onFailure(now);
+        return true;
+    }
+
+    /**
+     * Forget about players that were transferred too long ago to count as a quick rejoin
+     */
+    public void sweep() {
+        long now = System.nanoTime();
+        recentTransfers.values().removeIf(recent -> now - recent.time() > rejoinWindow);
+    }
+
+    /**
+     * Pick the available backend with the lowest load to weight ratio.
+     * This doesn't lock, so two players routed at the same time may both land on the same
+     * backend, which evens itself out on the next pick.
+     *
+     * @param now The current time from {@link System#nanoTime()}
+     * @param hasRoom Checks if a backend can take a player right now
+     * @return The least loaded backend, or null if none are available
+     */
+    private Backend leastLoaded(long now, Predicate<Backend> hasRoom) {
+        Backend best = null;
+        double bestLoad = Double.MAX_VALUE;
+        for (Backend backend : backends) {
+            if (!backend.isAvailable() || !backend.getCircuitBreaker().canRoute(now) || !hasRoom.test(backend)) {
+                continue;
+            }
+
+            double load = backend.getLoad();
+            if (load < bestLoad) {
+                best = backend;
+                bestLoad = load;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Update which backends are available from a health poll
+     *
+     * @param snapshot The result of the poll
+     */
+    public void updateHealth(HealthSnapshot snapshot) {
+        long now = System.nanoTime();
+        boolean changed = false;
+        for (BackendHealth health : snapshot.backends()) {
+            if (health.online()) {
+                health.backend().getCircuitBreaker().onHealthy(now);
+            } else {
+                health.backend().getCircuitBreaker().trip(now);
+            }
+
+            if (health.backend().isAvailable() != health.online()) {
+                health.backend().setAvailable(health.online());
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            List<Backend> available = new ArrayList<>();
+            for (Backend backend : backends) {
+                if (backend.isAvailable()) {
+                    available.add(backend);
+                }
+            }
+            ring = ConsistentHashRing.of(available);
+        }
+    }
+
+    public List<Backend> getBackends() {
+        return List.of(backends);
+    }
+
+    private record RecentTransfer(Backend backend, long time) {
+    }
+}
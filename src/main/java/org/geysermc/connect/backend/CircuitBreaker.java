@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.backend;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Takes a backend out of rotation once too many of the players sent to it fail and lets it back in
+ * one probe player at a time once it has had time to recover.
+ * None of this locks, state changes are made by swapping an immutable {@link Status} so routing never waits.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        /**
+         * Players are routed to the backend as normal
+         */
+        CLOSED,
+
+        /**
+         * The backend is failing and no players are routed to it
+         */
+        OPEN,
+
+        /**
+         * A single probe player is routed to the backend to see if it has recovered
+         */
+        HALF_OPEN
+    }
+
+    private final double failureRatio;
+    private final int minimumTransfers;
+    private final long failureWindow;
+    private final long openTime;
+    private final long probeTime;
+
+    private final AtomicReference<Status> status = new AtomicReference<>(new Status(State.CLOSED, 0, 0));
+
+    /**
+     * Players routed to the backend in the high half and how many of them failed in the low half,
+     * counted since the window started
+     */
+    private final AtomicLong counts = new AtomicLong();
+    private final AtomicLong windowStart = new AtomicLong();
+
+    /**
+     * @param failureRatio The share of players routed to the backend within the failure window that have to fail to open the breaker
+     * @param minimumTransfers How many players have to be routed to the backend within the failure window before it can open
+     * @param failureWindow How long transfers and failures are counted for in milliseconds
+     * @param openTime How long the breaker stays open before probing in milliseconds
+     * @param probeTime How long a probe player has to stay away for the backend to count as recovered in milliseconds
+     */
+    public CircuitBreaker(double failureRatio, int minimumTransfers, long failureWindow, long openTime, long probeTime) {
+        this.failureRatio = failureRatio;
+        this.minimumTransfers = Math.max(1, minimumTransfers);
+        this.failureWindow = TimeUnit.MILLISECONDS.toNanos(failureWindow);
+        this.openTime = TimeUnit.MILLISECONDS.toNanos(openTime);
+        this.probeTime = TimeUnit.MILLISECONDS.toNanos(probeTime);
+    }
+
+    public State getState() {
+        return status.get().state();
+    }
+
+    /**
+     * Check if a player could be routed to the backend right now, without changing any state
+     *
+     * @param now The current time from {@link System#nanoTime()}
+     * @return If the backend can take a player
+     */
+    public boolean canRoute(long now) {
+        Status current = status.get();
+        return switch (current.state()) {
+            case CLOSED -> true;
+            case OPEN -> now - current.openedAt() >= openTime;
+            case HALF_OPEN -> now - current.probeAt() >= probeTime;
+        };
+    }
+
+    /**
+     * Try to route a player to the backend. If the breaker is ready to probe
+     * only the first caller claims the probe slot, everyone else is refused.
+     *
+     * @param now The current time from {@link System#nanoTime()}
+     * @return If the player can be sent to the backend
+     */
+    public boolean tryRoute(long now) {
+        while (true) {
+            Status current = status.get();
+            switch (current.state()) {
+                case CLOSED -> {
+                    roll(now);
+                    counts.addAndGet(1L << 32);
+                    return true;
+                }
+                case OPEN -> {
+                    if (now - current.openedAt() < openTime) {
+                        return false;
+                    }
+                    if (status.compareAndSet(current, new Status(State.HALF_OPEN, current.openedAt(), now))) {
+                        return true;
+                    }
+                }
+                case HALF_OPEN -> {
+                    if (now - current.probeAt() < probeTime) {
+                        return false;
+                    }
+                    // The last probe didn't come back so the backend is fine again
+                    close(current, now);
+                }
+            }
+        }
+    }
+
+    /**
+     * Note that the backend answered a health check, which closes the breaker
+     * if a probe was routed there and hasn't come back
+     *
+     * @param now The current time from {@link System#nanoTime()}
+     */
+    public void onHealthy(long now) {
+        Status current = status.get();
+        if (current.state() == State.HALF_OPEN && now - current.probeAt() >= probeTime) {
+            close(current, now);
+        }
+    }
+
+    /**
+     * Count a failure against the backend, such as a player coming straight back after being sent there
+     *
+     * @param now The current time from {@link System#nanoTime()}
+     */
+    public void onFailure(long now) {
+        Status current = status.get();
+        switch (current.state()) {
+            case CLOSED -> {
+                roll(now);
+                long count = counts.incrementAndGet();
+                long transfers = count >>> 32;
+                long failures = count & 0xFFFFFFFFL;
+                // Busy backends see more rejoins, so only trip once enough players have been
+                // sent there to tell and a large enough share of them came back
+                if (transfers >= minimumTransfers && failures >= transfers * failureRatio) {
+                    status.compareAndSet(current, new Status(State.OPEN, now, 0));
+                }
+            }
+            // The probe failed, so give it longer
+            case HALF_OPEN -> status.compareAndSet(current, new Status(State.OPEN, now, 0));
+            case OPEN -> {
+            }
+        }
+    }
+
+    /**
+     * Open the breaker straight away, such as when the backend stops answering pings
+     *
+     * @param now The current time from {@link System#nanoTime()}
+     */
+    public void trip(long now) {
+        status.set(new Status(State.OPEN, now, 0));
+    }
+
+    private void close(Status current, long now) {
+        if (status.compareAndSet(current, new Status(State.CLOSED, 0, 0))) {
+            windowStart.set(now);
+            counts.set(0);
+        }
+    }
+
+    /**
+     * Start counting again once the failure window has passed
+     */
+    private void roll(long now) {
+        long start = windowStart.get();
+        if (now - start > failureWindow && windowStart.compareAndSet(start, now)) {
+            counts.set(0);
+        }
+    }
+
+    /**
+     * @param state The state of the breaker
+     * @param openedAt When the breaker last opened
+     * @param probeAt When the probe was routed to the backend while half open
+     */
+    private record Status(State state, long openedAt, long probeAt) {
+    }
+}
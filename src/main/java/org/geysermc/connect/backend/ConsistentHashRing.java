@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.backend;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable consistent hash ring over a set of backends. Each backend is placed on the ring many times
+ * in proportion to its weight so keys spread evenly, and adding or removing a backend only moves
+ * the keys that belonged to it.
+ */
+public class ConsistentHashRing {
+
+    private static final int VIRTUAL_NODES_PER_WEIGHT = 160;
+
+    private final long[] hashes;
+    private final Backend[] owners;
+
+    private ConsistentHashRing(long[] hashes, Backend[] owners) {
+        this.hashes = hashes;
+        this.owners = owners;
+    }
+
+    /**
+     * Build a ring for the given backends
+     *
+     * @param backends The backends to place on the ring
+     * @return The new ring
+     */
+    public static ConsistentHashRing of(List<Backend> backends) {
+        int total = 0;
+        for (Backend backend : backends) {
+            total += backend.getWeight() * VIRTUAL_NODES_PER_WEIGHT;
+        }
+
+        long[] points = new long[total];
+        Backend[] pointOwners = new Backend[total];
+        int i = 0;
+        for (Backend backend : backends) {
+            String name = backend.toString();
+            for (int node = 0; node < backend.getWeight() * VIRTUAL_NODES_PER_WEIGHT; node++) {
+                points[i] = hash(name + "#" + node);
+                pointOwners[i] = backend;
+                i++;
+            }
+        }
+
+        // Sort the points and their owners together
+        Integer[] order = new Integer[total];
+        for (int j = 0; j < total; j++) {
+            order[j] = j;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(points[a], points[b]));
+
+        long[] hashes = new long[total];
+        Backend[] owners = new Backend[total];
+        for (int j = 0; j < total; j++) {
+            hashes[j] = points[order[j]];
+            owners[j] = pointOwners[order[j]];
+        }
+        return new ConsistentHashRing(hashes, owners);
+    }
+
+    /**
+     * Find the backend that owns the given key
+     *
+     * @param key The key to look up
+     * @return The owning backend or null if the ring is empty
+     */
+    public Backend get(String key) {
+        if (hashes.length == 0) {
+            return null;
+        }
+
+        int index = Arrays.binarySearch(hashes, hash(key));
+        if (index < 0) {
+            // Not an exact match so take the next point clockwise
+            index = -index - 1;
+        }
+        if (index == hashes.length) {
+            index = 0;
+        }
+        return owners[index];
+    }
+
+    /**
+     * 64-bit FNV-1a followed by the MurmurHash3 finalizer to spread the bits
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.backend;
+
+import com.nukkitx.protocol.bedrock.BedrockClient;
+import com.nukkitx.protocol.bedrock.BedrockPong;
+import io.netty.channel.EventLoopGroup;
+import lombok.Getter;
+import org.geysermc.connect.utils.Logger;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+public class HealthPoller {
+
+    private static final long PING_TIMEOUT = 1500;
+
+    private final Logger logger;
+    private final BackendRouter router;
+    private final EventLoopGroup eventLoopGroup;
+    private final Consumer<HealthSnapshot> listener;
+
+    private final List<Backend> backends;
+    private final AdaptiveInterval[] intervals;
+
+    /**
+     * The latest result for each backend in config order, guarded by itself
+     */
+    private final BackendHealth[] latest;
+
+    private BedrockClient client;
+    private volatile boolean closed;
+
+    @Getter
+    private volatile HealthSnapshot snapshot = HealthSnapshot.EMPTY;
+
+    /**
+     * @param logger The logger to report failed pings to
+     * @param router The router to tell about backends going up or down
+     * @param eventLoopGroup The event loops to ping on
+     * @param listener Called with every new snapshot
+     * @param minInterval The shortest time between checks of a backend in milliseconds
+     * @param interval The usual time between checks of a backend in milliseconds
+     * @param maxInterval The longest time between checks of a backend in milliseconds
+     */
+    public HealthPoller(Logger logger, BackendRouter router, EventLoopGroup eventLoopGroup, Consumer<HealthSnapshot> listener,
+                        long minInterval, long interval, long maxInterval) {
+        this.logger = logger;
+        this.router = router;
+        this.eventLoopGroup = eventLoopGroup;
+        this.listener = listener;
+
+        this.backends = router.getBackends();
+        this.intervals = new AdaptiveInterval[backends.size()];
+        for (int i = 0; i < intervals.length; i++) {
+            intervals[i] = new AdaptiveInterval(minInterval, interval, maxInterval);
+        }
+        this.latest = new BackendHealth[backends.size()];
+    }
+
+    /**
+     * Bind the client used for all future pings
+     */
+    public void start() {
+        client = new BedrockClient(new InetSocketAddress("0.0.0.0", 0), eventLoopGroup);
+        client.bind().join();
+    }
+
+    /**
+     * Ping every backend at once and publish a new snapshot when they have all answered or timed out
+     *
+     * @return A future completed with the new snapshot
+     */
+    public CompletableFuture<HealthSnapshot> poll() {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<BackendHealth>[] futures = new CompletableFuture[backends.size()];
+        for (int i = 0; i < futures.length; i++) {
+            int index = i;
+            futures[i] = ping(backends.get(i)).thenApply(health -> {
+                publish(index, health);
+                return health;
+            });
+        }
+
+        return CompletableFuture.allOf(futures).thenApply(ignored -> snapshot);
+    }
+
+    /**
+     * Keep checking each backend on its own adaptive interval until closed.
+     * The first checks are spread out randomly so the backends aren't all pinged together.
+     */
+    public void schedule() {
+        for (int i = 0; i < backends.size(); i++) {
+            scheduleNext(i, intervals[i].initialDelay());
+        }
+    }
+
+    private void scheduleNext(int index, long delay) {
+        if (closed) {
+            return;
+        }
+
+        eventLoopGroup.schedule(() -> ping(backends.get(index)).thenAccept(health -> {
+            AdaptiveInterval interval = intervals[index];
+            long next;
+            synchronized (interval) {
+                next = health.online() ? interval.onSuccess(health.players()) : interval.onFailure();
+            }
+
+            try {
+                publish(index, health);
+            } finally {
+                // Keep checking even if something went wrong handling this result
+                scheduleNext(index, next);
+            }
+        }), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Replace the result for one backend and publish a new snapshot with it
+     *
+     * @param index The index of the backend
+     * @param health The new result
+     */
+    private void publish(int index, BackendHealth health) {
+        HealthSnapshot newSnapshot;
+        synchronized (latest) {
+            latest[index] = health;
+
+            List<BackendHealth> results = new ArrayList<>(latest.length);
+            for (BackendHealth result : latest) {
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+
+            newSnapshot = new HealthSnapshot(List.copyOf(results), System.currentTimeMillis());
+            snapshot = newSnapshot;
+            router.updateHealth(newSnapshot);
+        }
+
+        listener.accept(newSnapshot);
+    }
+
+    private CompletableFuture<BackendHealth> ping(Backend backend) {
+        long start = System.nanoTime();
+        long transfersBefore = backend.getTransfers().get();
+        CompletableFuture<BedrockPong> pingFuture;
+        try {
+            InetSocketAddress address = new InetSocketAddress(backend.getServerInfo().getIp(), backend.getServerInfo().getPort());
+            pingFuture = client.ping(address, PING_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            pingFuture = CompletableFuture.failedFuture(e);
+        }
+
+        return pingFuture.handle((pong, throwable) -> {
+            if (throwable != null) {
+                Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                if (cause instanceof TimeoutException) {
+                    logger.error("Timed out while trying to ping " + backend);
+                } else {
+                    logger.error("Failed to ping " + backend, cause);
+                }
+                return BackendHealth.offline(backend);
+            }
+
+            long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            backend.setReportedPlayers(pong.getPlayerCount(), transfersBefore);
+            return new BackendHealth(backend, true, latency, pong.getMotd(), pong.getSubMotd(), pong.getPlayerCount(), pong.getMaximumPlayerCount());
+        });
+    }
+
+    public void close() {
+        closed = true;
+        if (client != null) {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.backend;
+
+import java.util.List;
+
+/**
+ * An immutable view of the health of every backend, replaced as a whole after each poll
+ *
+ * @param backends The health of each backend, in the same order as the config
+ * @param timestamp When the poll finished
+ */
+public record HealthSnapshot(List<BackendHealth> backends, long timestamp) {
+
+    public static final HealthSnapshot EMPTY = new HealthSnapshot(List.of(), 0);
+
+    /**
+     * Get the health of the given backend
+     *
+     * @param backend The backend to look up
+     * @return The health of the backend or null if it hasn't been polled yet
+     */
+    public BackendHealth get(Backend backend) {
+        for (BackendHealth health : backends) {
+            if (health.backend() == backend) {
+                return health;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.backend;
+
+import com.nukkitx.protocol.bedrock.BedrockSession;
+import com.nukkitx.protocol.bedrock.packet.TextPacket;
+import org.geysermc.connect.metrics.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Meters how many players are transferred to each backend per second.
+ * Players over the rate wait in the spawn world, are shown their place in the queue and are let through in the order they arrived.
+ * A backend is only picked for a player once they are let through, so nobody is sent to a
+ * backend that went down or was taken out of rotation while they waited.
+ */
+public class JoinQueue {
+
+    /**
+     * How often waiting players are told their place in the queue
+     */
+    private static final long POSITION_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final BackendRouter router;
+    private final Map<Backend, Lane> lanes = new HashMap<>();
+    private final Metrics metrics;
+
+    /**
+     * Tokens added per nanosecond
+     */
+    private final double rate;
+    private final double burst;
+
+    /**
+     * Players waiting for any backend, guarded by this
+     */
+    private final ArrayDeque<Waiting> waiting = new ArrayDeque<>();
+    private final AtomicInteger depth = new AtomicInteger();
+
+    /**
+     * When waiting players were last told their place, guarded by this
+     */
+    private long lastPositionUpdate;
+
+    /**
+     * @param router Picks the backend for each player as they are let through
+     * @param rate Players transferred to each backend per second
+     * @param burst How many players can be transferred at once to a backend that hasn't had any recently
+     * @param metrics Where to record the queue depth and wait times
+     */
+    public JoinQueue(BackendRouter router, double rate, double burst, Metrics metrics) {
+        this.router = router;
+        this.rate = rate / 1_000_000_000D;
+        this.burst = Math.max(1, burst);
+        this.metrics = metrics;
+
+        long now = System.nanoTime();
+        for (Backend backend : router.getBackends()) {
+            lanes.put(backend, new Lane(now));
+        }
+
+        metrics.gauge("geyserconnect_join_queue_depth", "Players waiting in the spawn world to be transferred", depth::get);
+        metrics.gauge("geyserconnect_join_queue_oldest_wait_milliseconds", "How long the player at the front of the join queue has been waiting", this::getOldestWait);
+    }
+
+    /**
+     * Transfer the player straight away if nobody is waiting and a backend has room, otherwise queue them
+     *
+     * @param xuid The XUID of the player, used to route them
+     * @param session The session of the player
+     * @param transfer Transfers the player to the backend they were routed to, run on the session event loop
+     * @return If the player was queued rather than transferred
+     */
+    public boolean submit(String xuid, BedrockSession session, Consumer<Backend> transfer) {
+        Backend backend;
+        long now = System.nanoTime();
+        synchronized (this) {
+            refill(now);
+            backend = waiting.isEmpty() ? route(xuid) : null;
+            if (backend == null) {
+                waiting.add(new Waiting(xuid, session, transfer, now));
+                depth.incrementAndGet();
+                return true;
+            }
+        }
+
+        transfer.accept(backend);
+        return false;
+    }
+
+    /**
+     * Let through as many waiting players as the backends have room for, drop players who left
+     * and tell everyone still waiting their place in the queue every so often
+     */
+    public void drain() {
+        List<Released> released = new ArrayList<>();
+        List<Waiting> stillWaiting = new ArrayList<>();
+        long now = System.nanoTime();
+        synchronized (this) {
+            refill(now);
+
+            boolean updatePositions = now - lastPositionUpdate >= POSITION_INTERVAL;
+            if (updatePositions) {
+                lastPositionUpdate = now;
+            }
+
+            // The whole queue is walked every tick so players who left stop counting even while every backend is full
+            Iterator<Waiting> iterator = waiting.iterator();
+            while (iterator.hasNext()) {
+                Waiting next = iterator.next();
+
+                // Players who gave up waiting don't use up a slot
+                if (next.session.isClosed()) {
+                    iterator.remove();
+                    depth.decrementAndGet();
+                    continue;
+                }
+
+                // Players whose backend is still full keep their place
+                Backend backend = hasAnyRoom() ? route(next.xuid) : null;
+                if (backend != null) {
+                    iterator.remove();
+                    depth.decrementAndGet();
+                    released.add(new Released(next, backend));
+                } else if (updatePositions) {
+                    stillWaiting.add(next);
+                }
+            }
+        }
+
+        for (Released player : released) {
+            metrics.getJoinQueueWait().record(now - player.waiting.queuedAt);
+            player.waiting.session.getEventLoop().execute(() -> player.waiting.transfer.accept(player.backend));
+        }
+
+        for (int i = 0; i < stillWaiting.size(); i++) {
+            sendPosition(stillWaiting.get(i).session, i + 1);
+        }
+    }
+
+    private static void sendPosition(BedrockSession session, int position) {
+        TextPacket textPacket = new TextPacket();
+        textPacket.setType(TextPacket.Type.TIP);
+        textPacket.setNeedsTranslation(false);
+        textPacket.setSourceName("");
+        textPacket.setXuid("");
+        textPacket.setPlatformChatId("");
+        textPacket.setMessage("Position in queue: " + position);
+        session.getEventLoop().execute(() -> session.sendPacket(textPacket));
+    }
+
+    /**
+     * @return How long the player at the front of the queue has been waiting in milliseconds, 0 if nobody is
+     */
+    private synchronized long getOldestWait() {
+        Waiting oldest = waiting.peek();
+        return oldest == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.queuedAt);
+    }
+
+    /**
+     * Route a player to a backend with room and use up one of its slots, must hold the lock on this
+     *
+     * @param xuid The XUID of the player
+     * @return The backend, or null if the player has to wait
+     */
+    private Backend route(String xuid) {
+        Backend backend = router.route(xuid, candidate -> lanes.get(candidate).tokens >= 1);
+        if (backend != null) {
+            lanes.get(backend).tokens--;
+        }
+        return backend;
+    }
+
+    private void refill(long now) {
+        for (Lane lane : lanes.values()) {
+            lane.refill(now);
+        }
+    }
+
+    private boolean hasAnyRoom() {
+        for (Lane lane : lanes.values()) {
+            if (lane.tokens >= 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Waiting(String xuid, BedrockSession session, Consumer<Backend> transfer, long queuedAt) {
+    }
+
+    private record Released(Waiting waiting, Backend backend) {
+    }
+
+    private final class Lane {
+        private double tokens = burst;
+        private long lastRefill;
+
+        private Lane(long now) {
+            this.lastRefill = now;
+        }
+
+        private void refill(long now) {
+            long elapsed = now - lastRefill;
+            if (elapsed > 0) {
+                tokens = Math.min(burst, tokens + elapsed * rate);
+                lastRefill = now;
+            }
+        }
+    }
+}
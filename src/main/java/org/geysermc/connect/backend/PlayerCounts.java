@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.backend;
+
+/**
+ * The player counts we advertise, summed over every healthy backend
+ *
+ * @param players The online player count
+ * @param maxPlayers The maximum player count
+ */
+public record PlayerCounts(int players, int maxPlayers) {
+
+    /**
+     * Add up the counts of every online backend in a snapshot plus the players connected to us.
+     * If no backend is online the given defaults are used instead.
+     *
+     * @param snapshot The latest health snapshot
+     * @param defaultPlayers The player count to use if no backend is online
+     * @param defaultMaxPlayers The maximum player count to use if no backend is online
+     * @param localPlayers The players currently connected to us
+     * @return The aggregated counts
+     */
+    public static PlayerCounts aggregate(HealthSnapshot snapshot, int defaultPlayers, int defaultMaxPlayers, int localPlayers) {
+        long players = 0;
+        long maxPlayers = 0;
+        boolean anyOnline = false;
+        for (BackendHealth health : snapshot.backends()) {
+            if (health.online()) {
+                players += health.players();
+                maxPlayers += health.maxPlayers();
+                anyOnline = true;
+            }
+        }
+
+        if (!anyOnline) {
+            players = defaultPlayers;
+            maxPlayers = defaultMaxPlayers;
+        }
+
+        players += localPlayers;
+        return new PlayerCounts(clamp(players), clamp(maxPlayers));
+    }
+
+    private static int clamp(long value) {
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.loadtest;
+
+import com.nukkitx.protocol.bedrock.BedrockPacketCodec;
+import org.geysermc.geyser.network.GameProtocol;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simulates lots of clients joining a GeyserConnect instance to find out how many joins per second it can take.
+ * The instance needs xbox-auth disabled as the clients sign their own login chains, and as every client
+ * pings and connects from the same address it also needs ping-limit and admission disabled and join-queue rate set to 0.
+ * A single client is joined first and the test stops if it can't get through.
+ * <p>
+ * Usage: {@code java -cp GeyserConnect.jar org.geysermc.connect.loadtest.LoadTest [address] [port] [clients] [concurrency] [protocol]}.
+ * Passing a protocol version checks that clients on that version get through the spawn sequence.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws InterruptedException {
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 19132;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int concurrency = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        BedrockPacketCodec codec = args.length > 4 ? GameProtocol.getBedrockCodec(Integer.parseInt(args[4])) : GameProtocol.DEFAULT_BEDROCK_CODEC;
+        if (codec == null) {
+            System.out.println("Unsupported protocol version " + args[4]);
+            return;
+        }
+
+        try {
+            new LoadTestClient(address, codec, "LoadTestProbe").run().get();
+        } catch (ExecutionException e) {
+            System.out.println("Probe client failed: " + e.getCause());
+            System.out.println("Check the instance has xbox-auth and ping-limit and admission disabled and join-queue rate set to 0");
+            System.exit(1);
+        }
+
+        System.out.println("Joining " + clients + " clients to " + host + ":" + port + " using " + codec.getMinecraftVersion() + ", " + concurrency + " at a time");
+
+        long[] times = new long[clients];
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(clients);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            inFlight.acquire();
+
+            new LoadTestClient(address, codec, "LoadTest" + i).run().whenComplete((time, throwable) -> {
+                if (throwable != null) {
+                    if (failed.incrementAndGet() <= 10) {
+                        System.out.println("Client failed: " + throwable);
+                    }
+                } else {
+                    times[succeeded.getAndIncrement()] = time;
+                }
+
+                inFlight.release();
+                done.countDown();
+            });
+        }
+
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        int count = succeeded.get();
+        long[] sorted = Arrays.copyOf(times, count);
+        Arrays.sort(sorted);
+
+        System.out.println("Transferred: " + count + ", failed: " + failed.get());
+        System.out.printf("Joins/sec: %.1f%n", count / (elapsed / 1_000_000_000d));
+        if (count > 0) {
+            System.out.println("Time to transfer p50: " + TimeUnit.NANOSECONDS.toMillis(percentile(sorted, 0.50)) + "ms"
+                    + ", p99: " + TimeUnit.NANOSECONDS.toMillis(percentile(sorted, 0.99)) + "ms"
+                    + ", max: " + TimeUnit.NANOSECONDS.toMillis(sorted[count - 1]) + "ms");
+        }
+
+        System.exit(0);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.loadtest;
+
+import com.nukkitx.protocol.bedrock.BedrockClient;
+import com.nukkitx.protocol.bedrock.BedrockClientSession;
+import com.nukkitx.protocol.bedrock.BedrockPacketCodec;
+import com.nukkitx.protocol.bedrock.handler.BedrockPacketHandler;
+import com.nukkitx.protocol.bedrock.packet.*;
+import com.nukkitx.protocol.bedrock.util.EncryptionUtils;
+import io.netty.util.AsciiString;
+import org.geysermc.connect.utils.SpawnSequence;
+
+import java.net.InetSocketAddress;
+import java.security.KeyPair;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single simulated client going through the whole join until it is transferred
+ */
+public class LoadTestClient implements BedrockPacketHandler {
+
+    private static final long TIMEOUT = 30;
+
+    private final InetSocketAddress address;
+    private final BedrockPacketCodec codec;
+    private final String name;
+
+    private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+    private BedrockClient client;
+    private BedrockClientSession session;
+    private long startTime;
+    private long runtimeEntityId = 1;
+
+    public LoadTestClient(InetSocketAddress address, BedrockPacketCodec codec, String name) {
+        this.address = address;
+        this.codec = codec;
+        this.name = name;
+    }
+
+    /**
+     * Ping the server, join it and wait to be transferred
+     *
+     * @return A future completed with the nanoseconds from the start of the join until the transfer
+     */
+    public CompletableFuture<Long> run() {
+        startTime = System.nanoTime();
+
+        client = new BedrockClient(new InetSocketAddress("0.0.0.0", 0));
+        client.bind()
+                .thenCompose(ignored -> client.ping(address, TIMEOUT, TimeUnit.SECONDS))
+                .thenCompose(pong -> client.connect(address))
+                .whenComplete((clientSession, throwable) -> guard(() -> {
+                    if (throwable != null) {
+                        fail(throwable);
+                        return;
+                    }
+
+                    session = clientSession;
+                    session.setPacketCodec(codec);
+                    session.setPacketHandler(this);
+                    session.setLogging(false);
+                    session.addDisconnectHandler(reason -> fail(new IllegalStateException("Disconnected before transfer: " + reason)));
+
+                    if (codec.getProtocolVersion() < SpawnSequence.NETWORK_SETTINGS_PROTOCOL) {
+                        // Older clients log in straight away and use the default compression
+                        sendLogin();
+                    } else {
+                        RequestNetworkSettingsPacket settingsPacket = new RequestNetworkSettingsPacket();
+                        settingsPacket.setProtocolVersion(codec.getProtocolVersion());
+                        session.sendPacketImmediately(settingsPacket);
+                    }
+                }));
+
+        return result.orTimeout(TIMEOUT, TimeUnit.SECONDS).whenComplete((time, throwable) -> client.close());
+    }
+
+    private void fail(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    /**
+     * Run part of the join, failing the client straight away if it throws rather than waiting for the timeout
+     *
+     * @param body The code to run
+     */
+    private void guard(ThrowingRunnable body) {
+        try {
+            body.run();
+        } catch (Throwable t) {
+            fail(t);
+        }
+    }
+
+    private void sendLogin() throws Exception {
+        KeyPair keyPair = EncryptionUtils.createKeyPair();
+        UUID identity = UUID.nameUUIDFromBytes(name.getBytes());
+
+        LoginPacket loginPacket = new LoginPacket();
+        loginPacket.setProtocolVersion(codec.getProtocolVersion());
+        loginPacket.setChainData(new AsciiString(SelfSignedChain.createChain(keyPair, name, identity, "")));
+        loginPacket.setSkinData(new AsciiString(SelfSignedChain.createClientData(keyPair, name, address.getHostString() + ":" + address.getPort())));
+        session.sendPacketImmediately(loginPacket);
+    }
+
+    @Override
+    public boolean handle(NetworkSettingsPacket packet) {
+        guard(() -> {
+            session.setCompression(packet.getCompressionAlgorithm());
+            sendLogin();
+        });
+        return true;
+    }
+
+    @Override
+    public boolean handle(PlayStatusPacket packet) {
+        guard(() -> {
+            switch (packet.getStatus()) {
+                case LOGIN_SUCCESS -> { }
+                case PLAYER_SPAWN -> {
+                    SetLocalPlayerAsInitializedPacket initializedPacket = new SetLocalPlayerAsInitializedPacket();
+                    initializedPacket.setRuntimeEntityId(runtimeEntityId);
+                    session.sendPacket(initializedPacket);
+                }
+                default -> fail(new IllegalStateException("Login failed: " + packet.getStatus()));
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean handle(ResourcePacksInfoPacket packet) {
+        guard(() -> {
+            ResourcePackClientResponsePacket response = new ResourcePackClientResponsePacket();
+            response.setStatus(ResourcePackClientResponsePacket.Status.HAVE_ALL_PACKS);
+            session.sendPacket(response);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean handle(ResourcePackStackPacket packet) {
+        guard(() -> {
+            ResourcePackClientResponsePacket response = new ResourcePackClientResponsePacket();
+            response.setStatus(ResourcePackClientResponsePacket.Status.COMPLETED);
+            session.sendPacket(response);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean handle(StartGamePacket packet) {
+        runtimeEntityId = packet.getRuntimeEntityId();
+        return true;
+    }
+
+    @Override
+    public boolean handle(TransferPacket packet) {
+        result.complete(System.nanoTime() - startTime);
+        guard(session::disconnect);
+        return true;
+    }
+
+    @Override
+    public boolean handle(DisconnectPacket packet) {
+        fail(new IllegalStateException("Kicked: " + packet.getKickMessage()));
+        return true;
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
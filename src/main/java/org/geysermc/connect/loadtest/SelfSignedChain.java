@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.jwk.Curve;
+
+import java.net.URI;
+import java.security.KeyPair;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Creates the login data a client would send, signed by its own key instead of Mojang's
+ */
+public final class SelfSignedChain {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Create a chain with a single self-signed identity
+     *
+     * @param keyPair The key pair of the client
+     * @param name The display name of the player
+     * @param identity The UUID of the player
+     * @param xuid The XUID of the player
+     * @return The chain json as sent in the login packet
+     * @throws JOSEException If signing failed
+     */
+    public static String createChain(KeyPair keyPair, String name, UUID identity, String xuid) throws JOSEException {
+        long now = System.currentTimeMillis() / 1000;
+
+        ObjectNode extraData = OBJECT_MAPPER.createObjectNode();
+        extraData.put("displayName", name);
+        extraData.put("identity", identity.toString());
+        extraData.put("XUID", xuid);
+
+        ObjectNode payload = OBJECT_MAPPER.createObjectNode();
+        payload.put("nbf", now - 60);
+        payload.put("exp", now + 24 * 60 * 60);
+        payload.put("iat", now);
+        payload.put("certificateAuthority", true);
+        payload.put("identityPublicKey", encodeKey(keyPair));
+        payload.set("extraData", extraData);
+
+        ObjectNode chain = OBJECT_MAPPER.createObjectNode();
+        chain.putArray("chain").add(sign(keyPair, payload.toString()));
+        return chain.toString();
+    }
+
+    /**
+     * Create the client data sent alongside the chain
+     *
+     * @param keyPair The key pair of the client
+     * @param name The display name of the player
+     * @param serverAddress The address the client is connecting to
+     * @return The signed client data
+     * @throws JOSEException If signing failed
+     */
+    public static String createClientData(KeyPair keyPair, String name, String serverAddress) throws JOSEException {
+        ObjectNode payload = OBJECT_MAPPER.createObjectNode();
+        payload.put("ClientRandomId", UUID.randomUUID().getLeastSignificantBits());
+        payload.put("DeviceId", UUID.randomUUID().toString());
+        payload.put("DeviceModel", "LoadTest");
+        payload.put("DeviceOS", 7);
+        payload.put("GameVersion", "1.19.40");
+        payload.put("LanguageCode", "en_US");
+        payload.put("ServerAddress", serverAddress);
+        payload.put("SkinId", "Standard_Custom");
+        payload.put("SkinData", Base64.getEncoder().encodeToString(new byte[64 * 64 * 4]));
+        payload.put("SkinImageWidth", 64);
+        payload.put("SkinImageHeight", 64);
+        payload.put("ThirdPartyName", name);
+        payload.put("CurrentInputMode", 1);
+        payload.put("DefaultInputMode", 1);
+        payload.put("UIProfile", 0);
+        return sign(keyPair, payload.toString());
+    }
+
+    private static String sign(KeyPair keyPair, String payload) throws JOSEException {
+        JWSHeader header = new JWSHeader.Builder(JWSAlgorithm.ES384)
+                .x509CertURL(URI.create(encodeKey(keyPair)))
+                .build();
+
+        JWSObject jws = new JWSObject(header, new Payload(payload));
+        jws.sign(new ECDSASigner(keyPair.getPrivate(), Curve.P_384));
+        return jws.serialize();
+    }
+
+    private static String encodeKey(KeyPair keyPair) {
+        return Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+    }
+
+    private SelfSignedChain() {
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.nukkitx.protocol.bedrock.BedrockPacketCodec;
+import org.geysermc.connect.GeyserConnectConfig;
+import org.geysermc.connect.MasterServer;
+import org.geysermc.connect.utils.SpawnProfile;
+import org.geysermc.geyser.network.GameProtocol;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts GeyserConnect in process and joins one {@link LoadTestClient} per supported protocol version,
+ * checking that each one decodes the spawn sequence, sends SetLocalPlayerAsInitialized and gets transferred.
+ * <p>
+ * Usage: {@code java -cp GeyserConnect.jar org.geysermc.connect.loadtest.SpawnCheck [profile]}.
+ * Without a profile every spawn profile is checked, each in its own process as Geyser can only be loaded once.
+ * Exits with 1 if any client failed.
+ */
+public class SpawnCheck {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            boolean passed = true;
+            for (SpawnProfile profile : SpawnProfile.values()) {
+                passed &= checkInNewProcess(profile);
+            }
+            System.exit(passed ? 0 : 1);
+        }
+
+        SpawnProfile profile = SpawnProfile.valueOf(args[0].toUpperCase(Locale.ROOT));
+        int port;
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        MasterServer masterServer = new MasterServer(createConfig(profile, port));
+        masterServer.getRegistriesReady().join();
+
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", port);
+        int failed = 0;
+        for (BedrockPacketCodec codec : GameProtocol.SUPPORTED_BEDROCK_CODECS) {
+            String version = codec.getMinecraftVersion() + " (" + codec.getProtocolVersion() + ")";
+            try {
+                long time = new LoadTestClient(address, codec, "SpawnCheck" + codec.getProtocolVersion()).run().join();
+                System.out.println(profile.name().toLowerCase(Locale.ROOT) + " spawn, " + version + ": transferred in " + TimeUnit.NANOSECONDS.toMillis(time) + "ms");
+            } catch (Exception e) {
+                System.out.println(profile.name().toLowerCase(Locale.ROOT) + " spawn, " + version + ": FAILED " + e.getCause());
+                failed++;
+            }
+        }
+
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    /**
+     * Run the check for a single profile in a new JVM with the same classpath
+     *
+     * @param profile The spawn profile to check
+     * @return If every client got through
+     */
+    private static boolean checkInNewProcess(SpawnProfile profile) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                SpawnCheck.class.getName(), profile.name().toLowerCase(Locale.ROOT))
+                .inheritIO()
+                .start();
+        return process.waitFor() == 0;
+    }
+
+    /**
+     * The bundled config, changed so the clients can all join from one address without Xbox Live
+     *
+     * @param profile The spawn profile to use
+     * @param port The port to listen on
+     * @return The config
+     */
+    private static GeyserConnectConfig createConfig(SpawnProfile profile, int port) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
+        ObjectNode config;
+        try (InputStream input = SpawnCheck.class.getClassLoader().getResourceAsStream("config.yml")) {
+            config = (ObjectNode) objectMapper.readTree(input);
+        }
+
+        config.put("address", "127.0.0.1");
+        config.put("port", port);
+        config.put("query-server", false);
+        config.put("xbox-auth", false);
+        config.put("spawn-profile", profile.name().toLowerCase(Locale.ROOT));
+        config.putObject("admission").put("enabled", false);
+        config.putObject("ping-limit").put("enabled", false);
+        config.putObject("join-queue").put("rate", 0);
+        config.putObject("metrics").put("enabled", false);
+
+        return objectMapper.treeToValue(config, GeyserConnectConfig.class);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.login;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.nimbusds.jose.shaded.json.JSONArray;
+import org.geysermc.geyser.session.auth.BedrockClientData;
+
+import java.io.IOException;
+
+/**
+ * Reads the parts of the login data we need in a single streaming pass, without building a tree of the whole thing
+ */
+public final class LoginDecoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final ObjectReader CLIENT_DATA_READER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .readerFor(BedrockClientData.class);
+
+    /**
+     * The fields we use from a token in the login chain
+     *
+     * @param exp When the token expires in seconds since the epoch, {@link Long#MAX_VALUE} if it doesn't
+     * @param identityPublicKey The key the next token or the client data is signed with
+     * @param hasExtraData If the token contains player info
+     * @param displayName The display name of the player
+     * @param identity The UUID of the player
+     * @param xuid The XUID of the player
+     */
+    public record ChainPayload(long exp, String identityPublicKey, boolean hasExtraData, String displayName, String identity, String xuid) {
+    }
+
+    /**
+     * Read the list of tokens from the chain json
+     *
+     * @param chainData The raw chain json sent in the login packet
+     * @return The tokens in the chain
+     * @throws IOException If the json is malformed
+     */
+    public static JSONArray readChain(byte[] chainData) throws IOException {
+        JSONArray chain = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(chainData)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new LoginException("Invalid chain data!");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (!"chain".equals(field) || token != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                chain = new JSONArray();
+                while ((token = parser.nextToken()) == JsonToken.VALUE_STRING) {
+                    chain.add(parser.getText());
+                }
+                if (token != JsonToken.END_ARRAY) {
+                    throw new LoginException("Invalid chain data!");
+                }
+            }
+        }
+
+        if (chain == null || chain.isEmpty()) {
+            throw new LoginException("Invalid chain data!");
+        }
+        return chain;
+    }
+
+    /**
+     * Read the fields we need from the payload of a chain token
+     *
+     * @param payload The decoded payload of the token
+     * @return The fields from the payload
+     * @throws IOException If the json is malformed
+     */
+    public static ChainPayload readChainPayload(byte[] payload) throws IOException {
+        long exp = Long.MAX_VALUE;
+        String identityPublicKey = null;
+        boolean hasExtraData = false;
+        String displayName = null;
+        String identity = null;
+        String xuid = null;
+
+        try (JsonParser parser = JSON_FACTORY.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new LoginException("Invalid chain payload!");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                // Objects and arrays are skipped whole unless we read into them, so the parser stays in step
+                if (token.isStructStart() && !field.equals("extraData")) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                switch (field) {
+                    case "exp" -> exp = parser.getValueAsLong(Long.MAX_VALUE);
+                    case "identityPublicKey" -> identityPublicKey = token == JsonToken.VALUE_STRING ? parser.getText() : null;
+                    case "extraData" -> {
+                        if (token != JsonToken.START_OBJECT) {
+                            parser.skipChildren();
+                            break;
+                        }
+
+                        hasExtraData = true;
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String extraField = parser.getCurrentName();
+                            if (parser.nextToken().isStructStart()) {
+                                parser.skipChildren();
+                                continue;
+                            }
+
+                            switch (extraField) {
+                                case "displayName" -> displayName = parser.getValueAsString();
+                                case "identity" -> identity = parser.getValueAsString();
+                                case "XUID" -> xuid = parser.getValueAsString();
+                                default -> parser.skipChildren();
+                            }
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+
+        return new ChainPayload(exp, identityPublicKey, hasExtraData, displayName, identity, xuid);
+    }
+
+    /**
+     * Bind the client data straight from its json
+     *
+     * @param payload The decoded payload of the client data token
+     * @return The client data
+     * @throws IOException If the json is malformed
+     */
+    public static BedrockClientData readClientData(byte[] payload) throws IOException {
+        return CLIENT_DATA_READER.readValue(payload);
+    }
+
+    private LoginDecoder() {
+    }
+}
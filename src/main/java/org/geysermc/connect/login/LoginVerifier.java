@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.login;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.crypto.factories.DefaultJWSVerifierFactory;
+import com.nimbusds.jose.shaded.json.JSONArray;
+import com.nukkitx.protocol.bedrock.packet.LoginPacket;
+import com.nukkitx.protocol.bedrock.util.EncryptionUtils;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.geysermc.connect.metrics.Metrics;
+import org.geysermc.geyser.session.auth.AuthData;
+import org.geysermc.geyser.session.auth.BedrockClientData;
+
+import java.net.URI;
+import java.security.interfaces.ECPublicKey;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies login chains on a dedicated pool so the signature checks don't hold up the network threads
+ */
+public class LoginVerifier {
+
+    private final ThreadPoolExecutor executor;
+
+    private final boolean xboxAuth;
+
+    private final ClientDataMode clientDataMode;
+
+    private final Metrics metrics;
+
+    private final Cache<HashCode, VerifiedIdentity> identityCache;
+
+    /**
+     * @param threads The amount of verification threads, 0 or less to use one per CPU core
+     * @param queueSize How many logins can wait for a thread before new ones are rejected
+     * @param xboxAuth If the chain has to be signed by Mojang, otherwise self-signed chains are accepted
+     * @param clientDataMode When to decode the client data
+     * @param cacheSize How many verified chains to remember
+     * @param cacheTime How long to remember a verified chain for in seconds, it is forgotten sooner if the chain expires
+     * @param metrics The metrics to count cache hits and misses in
+     */
+    public LoginVerifier(int threads, int queueSize, boolean xboxAuth, ClientDataMode clientDataMode, int cacheSize, int cacheTime, Metrics metrics) {
+        this.xboxAuth = xboxAuth;
+        this.clientDataMode = clientDataMode;
+        this.metrics = metrics;
+        this.identityCache = CacheBuilder.newBuilder()
+                .maximumSize(Math.max(0, cacheSize))
+                .expireAfterWrite(Math.max(0, cacheTime), TimeUnit.SECONDS)
+                .build();
+
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                new DefaultThreadFactory("Login verification thread"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queue the login for verification
+     *
+     * @param packet The login packet sent by the client
+     * @return A future completed with the verified login, or exceptionally with a
+     *         {@link RejectedExecutionException} if the queue is full
+     */
+    public CompletableFuture<LoginResult> verify(LoginPacket packet) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return verifyNow(packet);
+                } catch (LoginException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new LoginException("Failed to login", e);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Verify the login on the calling thread
+     *
+     * @param packet The login packet sent by the client
+     * @return The verified login
+     * @throws Exception If the login is invalid
+     */
+    public LoginResult verifyNow(LoginPacket packet) throws Exception {
+        byte[] chainBytes = packet.getChainData().toByteArray();
+
+        // Players who joined recently send the exact same chain, so we can skip verifying it again
+        HashCode chainHash = Hashing.sha256().hashBytes(chainBytes);
+        VerifiedIdentity identity = identityCache.getIfPresent(chainHash);
+        if (identity != null && identity.expiresAt() > System.currentTimeMillis() / 1000) {
+            metrics.getIdentityCacheHits().increment();
+        } else {
+            metrics.getIdentityCacheMisses().increment();
+            identity = verifyChain(chainBytes);
+            if (identity.trusted()) {
+                identityCache.put(chainHash, identity);
+            }
+        }
+
+        // Get the skin data to validate the JWS token
+        JWSObject skinData = JWSObject.parse(packet.getSkinData().toString());
+        if (!skinData.verify(new DefaultJWSVerifierFactory().createJWSVerifier(skinData.getHeader(), identity.identityPublicKey()))) {
+            throw new LoginException("Invalid identity public key!");
+        }
+
+        // Only decode the client data now if we were asked to
+        BedrockClientData clientData = null;
+        if (clientDataMode == ClientDataMode.EAGER) {
+            clientData = LoginDecoder.readClientData(skinData.getPayload().toBytes());
+            clientData.setOriginalString(packet.getSkinData().toString());
+        }
+
+        return new LoginResult(identity.authData(), identity.chainData(), packet.getSkinData(), clientData);
+    }
+
+    private VerifiedIdentity verifyChain(byte[] chainBytes) throws Exception {
+        // Get the tokens from the chain data
+        JSONArray chain = LoginDecoder.readChain(chainBytes);
+
+        // Verify the chain data, this is still done without xbox auth so load tests do the same work
+        boolean trusted = EncryptionUtils.verifyChain(chain);
+        if (!trusted) {
+            if (xboxAuth) {
+                throw new LoginException("Failed to login, due to invalid chain data!");
+            }
+
+            // Without xbox auth the chain doesn't have to be rooted at Mojang, but it still has to be signed properly
+            if (!verifySignatures(chain)) {
+                throw new LoginException("Failed to login, due to invalid chain signatures!");
+            }
+        }
+
+        // The chain is only valid until the first of its tokens expires
+        long expiresAt = Long.MAX_VALUE;
+        LoginDecoder.ChainPayload payload = null;
+        for (Object token : chain) {
+            payload = LoginDecoder.readChainPayload(JWSObject.parse((String) token).getPayload().toBytes());
+            expiresAt = Math.min(expiresAt, payload.exp());
+        }
+
+        // Check the identityPublicKey is there
+        if (payload.identityPublicKey() == null) {
+            throw new LoginException("Missing identity public key!");
+        }
+
+        // Create an ECPublicKey from the identityPublicKey
+        ECPublicKey identityPublicKey = EncryptionUtils.generateKey(payload.identityPublicKey());
+
+        // Make sure the client sent over the username, xuid and other info
+        if (!payload.hasExtraData() || payload.displayName() == null || payload.identity() == null || payload.xuid() == null) {
+            throw new LoginException("Missing client data");
+        }
+
+        AuthData authData = new AuthData(
+                payload.displayName(),
+                UUID.fromString(payload.identity()),
+                payload.xuid()
+        );
+
+        @SuppressWarnings("unchecked")
+        List<String> chainData = List.copyOf((List<String>) (List<?>) chain);
+        return new VerifiedIdentity(authData, chainData, identityPublicKey, expiresAt, trusted);
+    }
+
+    /**
+     * Check every token in the chain is signed by the key the token before it hands on,
+     * with the first token allowed to be signed by its own key
+     *
+     * @param chain The tokens of the chain
+     * @return If every signature matches
+     * @throws Exception If a token or key is malformed
+     */
+    private static boolean verifySignatures(JSONArray chain) throws Exception {
+        ECPublicKey expectedKey = null;
+        for (Object token : chain) {
+            JWSObject jws = JWSObject.parse((String) token);
+
+            URI x5u = jws.getHeader().getX509CertURL();
+            if (x5u == null) {
+                return false;
+            }
+
+            ECPublicKey signingKey = EncryptionUtils.generateKey(x5u.toString());
+            if (expectedKey != null && !expectedKey.equals(signingKey)) {
+                return false;
+            }
+            if (!jws.verify(new DefaultJWSVerifierFactory().createJWSVerifier(jws.getHeader(), signingKey))) {
+                return false;
+            }
+
+            String nextKey = LoginDecoder.readChainPayload(jws.getPayload().toBytes()).identityPublicKey();
+            if (nextKey == null) {
+                return false;
+            }
+            expectedKey = EncryptionUtils.generateKey(nextKey);
+        }
+        return expectedKey != null;
+    }
+
+    /**
+     * A chain that has already been verified
+     *
+     * @param authData The identity from the chain
+     * @param chainData The chain itself
+     * @param identityPublicKey The key the client data has to be signed with
+     * @param expiresAt When the first token in the chain expires, in seconds since the epoch
+     * @param trusted If the chain is signed by Mojang
+     */
+    private record VerifiedIdentity(AuthData authData, List<String> chainData, ECPublicKey identityPublicKey, long expiresAt, boolean trusted) {
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.metrics;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A latency histogram with logarithmic buckets each split into four linear sub-buckets,
+ * so any recorded value is accurate to within 25%. Recording only touches atomics and never allocates.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Values above 2^35 microseconds (around 9.5 hours) all land in the last bucket
+     */
+    private static final int MAX_EXPONENT = 35;
+    private static final int BUCKETS = (MAX_EXPONENT - 1) * 4 + 4;
+
+    @Getter
+    private final String name;
+    @Getter
+    private final String help;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+
+    public LatencyHistogram(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    /**
+     * Record the time since the given start
+     *
+     * @param startNanos The start time from {@link System#nanoTime()}
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Record a duration
+     *
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.incrementAndGet();
+        sumMicros.addAndGet(micros);
+    }
+
+    private static int bucketIndex(long micros) {
+        if (micros < 4) {
+            return (int) micros;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+
+        int subBucket = (int) ((micros >>> (exponent - 2)) & 3);
+        return (exponent - 1) * 4 + subBucket;
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < 4) {
+            return index + 1;
+        }
+
+        int exponent = index / 4 + 1;
+        int subBucket = index % 4;
+        return (long) (4 + subBucket + 1) << (exponent - 2);
+    }
+
+    /**
+     * Write this histogram in the Prometheus text format.
+     * The same buckets are always written, one per power of two from 4 microseconds up, so the series
+     * don't change between scrapes. The last bucket also holds every larger value so only +Inf covers it.
+     *
+     * @param builder The builder to write to
+     */
+    public void writePrometheus(StringBuilder builder) {
+        builder.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(name).append(" histogram\n");
+
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS - 1; i++) {
+            cumulative += buckets.get(i);
+            if (i % 4 == 3) {
+                builder.append(name).append("_bucket{le=\"").append(seconds(bucketUpperBound(i))).append("\"} ").append(cumulative).append('\n');
+            }
+        }
+        cumulative += buckets.get(BUCKETS - 1);
+
+        long total = count.get();
+        builder.append(name).append("_bucket{le=\"+Inf\"} ").append(Math.max(total, cumulative)).append('\n');
+        builder.append(name).append("_sum ").append(seconds(sumMicros.get())).append('\n');
+        builder.append(name).append("_count ").append(total).append('\n');
+    }
+
+    /**
+     * @param micros A duration in microseconds
+     * @return The duration in seconds, written without an exponent
+     */
+    private static String seconds(long micros) {
+        return BigDecimal.valueOf(micros, 6).stripTrailingZeros().toPlainString();
+    }
+}
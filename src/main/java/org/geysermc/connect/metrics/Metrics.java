@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.metrics;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.geysermc.connect.utils.SessionState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * All the metrics we keep about the join pipeline
+ */
+@Getter
+public class Metrics {
+
+    // These have to be created before the metrics below register themselves
+    @Getter(AccessLevel.NONE)
+    private final List<LatencyHistogram> histograms = new ArrayList<>();
+    @Getter(AccessLevel.NONE)
+    private final List<NamedCounter> counters = new ArrayList<>();
+    @Getter(AccessLevel.NONE)
+    private final List<NamedGauge> gauges = new ArrayList<>();
+    @Getter(AccessLevel.NONE)
+    private final List<LabeledGauge> labeledGauges = new ArrayList<>();
+
+    private final LatencyHistogram networkSettingsToLogin = histogram("geyserconnect_network_settings_to_login_seconds", "Time from the network settings request until the login packet arrives");
+    private final LatencyHistogram loginVerification = histogram("geyserconnect_login_verification_seconds", "Time spent verifying the login chain, including waiting for a verification thread");
+    private final LatencyHistogram resourcePackHandshake = histogram("geyserconnect_resource_pack_handshake_seconds", "Time from a successful login until the resource pack handshake completes");
+    private final LatencyHistogram startGame = histogram("geyserconnect_start_game_seconds", "Time spent sending the spawn sequence");
+    private final LatencyHistogram joinQueueWait = histogram("geyserconnect_join_queue_wait_seconds", "Time players spent in the join queue before being transferred");
+    private final LatencyHistogram initializedToTransfer = histogram("geyserconnect_initialized_to_transfer_seconds", "Time from the player being initialized until they are sent a transfer");
+
+    private final LongAdder pings = counter("geyserconnect_pings_total", "Unconnected pings answered");
+    private final LongAdder droppedPings = counter("geyserconnect_pings_dropped_total", "Unconnected pings dropped for going over the per address or global rate");
+    private final LongAdder rejectedProtocols = counter("geyserconnect_rejected_protocols_total", "Clients turned away for using an unsupported version");
+    private final LongAdder failedLogins = counter("geyserconnect_failed_logins_total", "Logins that failed verification or were turned away");
+    private final LongAdder transfers = counter("geyserconnect_transfers_total", "Players transferred to a backend");
+    private final LongAdder quickRejoins = counter("geyserconnect_quick_rejoins_total", "Players who came back soon after being transferred, counted against the backend they were sent to");
+    private final LongAdder identityCacheHits = counter("geyserconnect_identity_cache_hits_total", "Logins whose chain was already verified");
+    private final LongAdder identityCacheMisses = counter("geyserconnect_identity_cache_misses_total", "Logins whose chain had to be verified");
+    private final LongAdder rejectedConnections = counter("geyserconnect_admission_rejected_total", "Connection requests dropped for going over the per address or subnet rate");
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicIntegerArray sessionStates = new AtomicIntegerArray(SessionState.getAll().length);
+
+    /**
+     * Move a session from one state to another
+     *
+     * @param from The state the session was in or null if it just connected
+     * @param to The state the session is now in or null if it disconnected
+     */
+    public void moveSession(SessionState from, SessionState to) {
+        if (from != null) {
+            sessionStates.decrementAndGet(from.ordinal());
+        }
+        if (to != null) {
+            sessionStates.incrementAndGet(to.ordinal());
+        }
+    }
+
+    /**
+     * @return The number of logged in players that haven't been transferred yet
+     */
+    public int getLocalPlayers() {
+        int players = 0;
+        for (SessionState state : SessionState.getAll()) {
+            if (state.isPlayer()) {
+                players += sessionStates.get(state.ordinal());
+            }
+        }
+        return players;
+    }
+
+    private LatencyHistogram histogram(String name, String help) {
+        LatencyHistogram histogram = new LatencyHistogram(name, help);
+        histograms.add(histogram);
+        return histogram;
+    }
+
+    private LongAdder counter(String name, String help) {
+        LongAdder counter = new LongAdder();
+        counters.add(new NamedCounter(name, help, counter));
+        return counter;
+    }
+
+    /**
+     * Register a gauge which is read every time the metrics are exported
+     *
+     * @param name The name of the gauge
+     * @param help The description of the gauge
+     * @param value Supplies the current value
+     */
+    public void gauge(String name, String help, LongSupplier value) {
+        synchronized (gauges) {
+            gauges.add(new NamedGauge(name, help, value));
+        }
+    }
+
+    /**
+     * Register a gauge with a value for each set of labels, read every time the metrics are exported
+     *
+     * @param name The name of the gauge
+     * @param help The description of the gauge
+     * @param values Supplies the current value for each set of labels, written as they should appear between the braces
+     */
+    public void labeledGauge(String name, String help, Supplier<Map<String, Long>> values) {
+        synchronized (gauges) {
+            labeledGauges.add(new LabeledGauge(name, help, values));
+        }
+    }
+
+    /**
+     * Export every metric in the Prometheus text format
+     *
+     * @return The exported metrics
+     */
+    public String toPrometheus() {
+        StringBuilder builder = new StringBuilder(4096);
+        for (NamedCounter counter : counters) {
+            builder.append("# HELP ").append(counter.name()).append(' ').append(counter.help()).append('\n');
+            builder.append("# TYPE ").append(counter.name()).append(" counter\n");
+            builder.append(counter.name()).append(' ').append(counter.value().sum()).append('\n');
+        }
+
+        synchronized (gauges) {
+            for (NamedGauge gauge : gauges) {
+                builder.append("# HELP ").append(gauge.name()).append(' ').append(gauge.help()).append('\n');
+                builder.append("# TYPE ").append(gauge.name()).append(" gauge\n");
+                builder.append(gauge.name()).append(' ').append(gauge.value().getAsLong()).append('\n');
+            }
+
+            for (LabeledGauge gauge : labeledGauges) {
+                builder.append("# HELP ").append(gauge.name()).append(' ').append(gauge.help()).append('\n');
+                builder.append("# TYPE ").append(gauge.name()).append(" gauge\n");
+                for (Map.Entry<String, Long> entry : gauge.values().get().entrySet()) {
+                    builder.append(gauge.name()).append('{').append(entry.getKey()).append("} ").append(entry.getValue()).append('\n');
+                }
+            }
+        }
+
+        builder.append("# HELP geyserconnect_sessions Connected sessions in each state\n");
+        builder.append("# TYPE geyserconnect_sessions gauge\n");
+        for (SessionState state : SessionState.getAll()) {
+            builder.append("geyserconnect_sessions{state=\"").append(state.name().toLowerCase(Locale.ROOT)).append("\"} ")
+                    .append(sessionStates.get(state.ordinal())).append('\n');
+        }
+
+        for (LatencyHistogram histogram : histograms) {
+            histogram.writePrometheus(builder);
+        }
+        return builder.toString();
+    }
+
+    private record NamedCounter(String name, String help, LongAdder value) {
+    }
+
+    private record NamedGauge(String name, String help, LongSupplier value) {
+    }
+
+    private record LabeledGauge(String name, String help, Supplier<Map<String, Long>> values) {
+    }
+}
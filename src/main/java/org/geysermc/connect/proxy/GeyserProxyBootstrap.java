@@ -28,13 +28,14 @@ package org.geysermc.connect.proxy;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import org.geysermc.common.PlatformType;
-import org.geysermc.connect.MasterServer;
 import org.geysermc.geyser.GeyserBootstrap;
 import org.geysermc.geyser.GeyserImpl;
 import org.geysermc.geyser.command.GeyserCommandManager;
 import org.geysermc.geyser.configuration.GeyserConfiguration;
 import org.geysermc.geyser.dump.BootstrapDumpInfo;
 import org.geysermc.geyser.ping.IGeyserPingPassthrough;
+import org.geysermc.geyser.registry.BlockRegistries;
+import org.geysermc.geyser.registry.Registries;
 import org.geysermc.geyser.text.GeyserLocale;
 
 import java.io.BufferedReader;
@@ -53,12 +54,24 @@ public class GeyserProxyBootstrap implements GeyserBootstrap {
 
     private GeyserImpl geyser;
 
+    private final String motd;
+    private final int maxPlayers;
+    private final boolean debugMode;
+    private final GeyserBootMode bootMode;
+
+    public GeyserProxyBootstrap(String motd, int maxPlayers, boolean debugMode, GeyserBootMode bootMode) {
+        this.motd = motd;
+        this.maxPlayers = maxPlayers;
+        this.debugMode = debugMode;
+        this.bootMode = bootMode;
+    }
+
     @Override
     public void onEnable() {
         GeyserLocale.init(this);
 
         // Setup a logger
-        geyserLogger = new GeyserProxyLogger();
+        geyserLogger = new GeyserProxyLogger(debugMode);
 
         // Read the static config from resources
         try {
@@ -66,8 +79,8 @@ public class GeyserProxyBootstrap implements GeyserBootstrap {
 
             // Grab the config as text and replace static strings to the main config variables
             String text = new BufferedReader(new InputStreamReader(configFile, StandardCharsets.UTF_8)).lines().collect(Collectors.joining("\n"));
-            text = text.replaceAll("%MOTD%", MasterServer.getInstance().getServerInfo().getMotd());
-            text = text.replace("%PLAYERS%", String.valueOf(MasterServer.getInstance().getServerInfo().getMaxPlayers()));
+            text = text.replaceAll("%MOTD%", motd);
+            text = text.replace("%PLAYERS%", String.valueOf(maxPlayers));
 
             ObjectMapper objectMapper = new ObjectMapper(new YAMLFactory());
             geyserConfig = objectMapper.readValue(text, GeyserProxyConfiguration.class);
@@ -79,12 +92,23 @@ public class GeyserProxyBootstrap implements GeyserBootstrap {
 
         // Create the connector and command manager
         geyser = GeyserImpl.load(PlatformType.STANDALONE, this);
-        GeyserImpl.start();
+
+        if (bootMode == GeyserBootMode.LEAN) {
+            // We only read the item, biome and entity registries and the protocol codecs,
+            // so skip the rest of the runtime and its thread pools
+            Registries.init();
+            BlockRegistries.init();
+        } else {
+            GeyserImpl.start();
+        }
     }
 
     @Override
     public void onDisable() {
-        geyser.shutdown();
+        // Nothing was started in lean mode so there is nothing to shut down
+        if (geyser != null && bootMode == GeyserBootMode.FULL) {
+            geyser.shutdown();
+        }
     }
 
     @Override
@@ -26,17 +26,22 @@
 package org.geysermc.connect.proxy;
 
 import lombok.extern.log4j.Log4j2;
-import org.geysermc.connect.MasterServer;
 import org.geysermc.connect.utils.Logger;
 
 @Log4j2
 public class GeyserProxyLogger extends Logger {
 
+    private final boolean debugMode;
+
+    public GeyserProxyLogger(boolean debugMode) {
+        this.debugMode = debugMode;
+    }
+
     /**
      * Disable debug messages depending on config
      */
     public void debug(String message) {
-        if (MasterServer.getInstance().getGeyserConnectConfig().getGeyser().isDebugMode())
+        if (debugMode)
             super.debug(message);
     }
 }
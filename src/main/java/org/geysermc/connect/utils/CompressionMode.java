@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.utils;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.nukkitx.protocol.bedrock.data.PacketCompressionAlgorithm;
+
+import java.util.zip.Deflater;
+
+public enum CompressionMode {
+    /**
+     * Supported by every client, smallest packets for the most CPU
+     */
+    @JsonProperty("zlib")
+    ZLIB(PacketCompressionAlgorithm.ZLIB),
+
+    /**
+     * Much less CPU than zlib but bigger packets
+     */
+    @JsonProperty("snappy")
+    SNAPPY(PacketCompressionAlgorithm.SNAPPY),
+
+    /**
+     * No compression for LAN setups, sent as zlib at level 0 as the client always expects compressed batches
+     */
+    @JsonProperty("none")
+    NONE(PacketCompressionAlgorithm.ZLIB);
+
+    private final PacketCompressionAlgorithm algorithm;
+
+    CompressionMode(PacketCompressionAlgorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public PacketCompressionAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Get the compression level to use for this mode
+     *
+     * @param level The configured level
+     * @return The level to give the session
+     */
+    public int getLevel(int level) {
+        return this == NONE ? Deflater.NO_COMPRESSION : level;
+    }
+}
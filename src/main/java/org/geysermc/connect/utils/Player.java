@@ -25,53 +25,33 @@
 
 package org.geysermc.connect.utils;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.nukkitx.math.vector.Vector2f;
-import com.nukkitx.math.vector.Vector3f;
-import com.nukkitx.math.vector.Vector3i;
-import com.nukkitx.nbt.NbtMap;
+import com.nimbusds.jose.JWSObject;
 import com.nukkitx.protocol.bedrock.BedrockServerSession;
-import com.nukkitx.protocol.bedrock.data.*;
-import com.nukkitx.protocol.bedrock.packet.*;
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import com.nukkitx.protocol.bedrock.data.PacketCompressionAlgorithm;
+import com.nukkitx.protocol.bedrock.packet.TransferPacket;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
-import org.geysermc.geyser.registry.Registries;
-import org.geysermc.geyser.registry.type.ItemMappings;
+import org.geysermc.connect.login.LoginDecoder;
 import org.geysermc.geyser.session.auth.AuthData;
 import org.geysermc.geyser.session.auth.BedrockClientData;
-import org.geysermc.geyser.util.ChunkUtils;
 
-import java.util.UUID;
+import java.util.List;
 
 @Getter
 public class Player {
-    private static final byte[] EMPTY_CHUNK_DATA;
-
-    static {
-        ByteBuf byteBuf = Unpooled.buffer();
-        try {
-            for (int i = 0; i < 32; i++) {
-                byteBuf.writeBytes(ChunkUtils.EMPTY_BIOME_DATA);
-            }
-
-            byteBuf.writeByte(0); // Border
-
-            EMPTY_CHUNK_DATA = new byte[byteBuf.readableBytes()];
-            byteBuf.readBytes(EMPTY_CHUNK_DATA);
-        } finally {
-            byteBuf.release();
-        }
-    }
-
     private final AuthData authData;
     @Setter
-    private JsonNode chainData;
+    private List<String> chainData;
 
     private final BedrockServerSession session;
 
-    @Setter
+    /**
+     * The signed client data as it was received, kept until it is decoded or released
+     */
+    @Getter(AccessLevel.NONE)
+    private CharSequence rawClientData;
+
     private BedrockClientData clientData;
 
     public Player(AuthData authData, BedrockServerSession session) {
@@ -80,105 +60,54 @@ public class Player {
     }
 
     /**
-     * Send a few different packets to get the client to load in
+     * Set the client data, either already decoded or to be decoded on first use
+     *
+     * @param rawClientData The signed client data as it was received
+     * @param clientData The decoded client data or null to decode it when needed
      */
-    public void sendStartGame() {
-        ItemMappings itemMappings = Registries.ITEMS.forVersion(session.getPacketCodec().getProtocolVersion());
-
-        // A lot of this likely doesn't need to be changed
-        StartGamePacket startGamePacket = new StartGamePacket();
-        startGamePacket.setUniqueEntityId(1);
-        startGamePacket.setRuntimeEntityId(1);
-        startGamePacket.setPlayerGameType(GameType.CREATIVE);
-        startGamePacket.setPlayerPosition(Vector3f.from(0, 64 + 2, 0));
-        startGamePacket.setRotation(Vector2f.ONE);
-
-        startGamePacket.setSeed(-1L);
-        startGamePacket.setDimensionId(2);
-        startGamePacket.setGeneratorId(1);
-        startGamePacket.setLevelGameType(GameType.CREATIVE);
-        startGamePacket.setDifficulty(0);
-        startGamePacket.setDefaultSpawn(Vector3i.ZERO);
-        startGamePacket.setAchievementsDisabled(true);
-        startGamePacket.setCurrentTick(-1);
-        startGamePacket.setEduEditionOffers(0);
-        startGamePacket.setEduFeaturesEnabled(false);
-        startGamePacket.setRainLevel(0);
-        startGamePacket.setLightningLevel(0);
-        startGamePacket.setMultiplayerGame(true);
-        startGamePacket.setBroadcastingToLan(true);
-        startGamePacket.getGamerules().add(new GameRuleData<>("showcoordinates", true));
-        startGamePacket.setPlatformBroadcastMode(GamePublishSetting.PUBLIC);
-        startGamePacket.setXblBroadcastMode(GamePublishSetting.PUBLIC);
-        startGamePacket.setCommandsEnabled(true);
-        startGamePacket.setTexturePacksRequired(false);
-        startGamePacket.setBonusChestEnabled(false);
-        startGamePacket.setStartingWithMap(false);
-        startGamePacket.setTrustingPlayers(true);
-        startGamePacket.setDefaultPlayerPermission(PlayerPermission.VISITOR);
-        startGamePacket.setServerChunkTickRange(4);
-        startGamePacket.setBehaviorPackLocked(false);
-        startGamePacket.setResourcePackLocked(false);
-        startGamePacket.setFromLockedWorldTemplate(false);
-        startGamePacket.setUsingMsaGamertagsOnly(false);
-        startGamePacket.setFromWorldTemplate(false);
-        startGamePacket.setWorldTemplateOptionLocked(false);
-
-        startGamePacket.setLevelId("");
-        startGamePacket.setLevelName("GeyserConnect");
-        startGamePacket.setPremiumWorldTemplateId("");
-        startGamePacket.setCurrentTick(0);
-        startGamePacket.setEnchantmentSeed(0);
-        startGamePacket.setMultiplayerCorrelationId("");
-        startGamePacket.setItemEntries(itemMappings.getItemEntries());
-        startGamePacket.setInventoriesServerAuthoritative(true);
-        startGamePacket.setServerEngine("");
-        startGamePacket.setPlayerPropertyData(NbtMap.EMPTY);
-        startGamePacket.setWorldTemplateId(UUID.randomUUID());
-        startGamePacket.setChatRestrictionLevel(ChatRestrictionLevel.NONE);
-
-        SyncedPlayerMovementSettings settings = new SyncedPlayerMovementSettings();
-        settings.setMovementMode(AuthoritativeMovementMode.CLIENT);
-        settings.setRewindHistorySize(0);
-        settings.setServerAuthoritativeBlockBreaking(false);
-        startGamePacket.setPlayerMovementSettings(settings);
-
-        startGamePacket.setVanillaVersion("*");
-        session.sendPacket(startGamePacket);
-
-        // Send an empty chunk
-        LevelChunkPacket data = new LevelChunkPacket();
-        data.setChunkX(0);
-        data.setChunkZ(0);
-        data.setSubChunksLength(0);
-        data.setData(EMPTY_CHUNK_DATA);
-        data.setCachingEnabled(false);
-        session.sendPacket(data);
-
-        // Send the biomes
-        BiomeDefinitionListPacket biomeDefinitionListPacket = new BiomeDefinitionListPacket();
-        biomeDefinitionListPacket.setDefinitions(Registries.BIOMES_NBT.get());
-        session.sendPacket(biomeDefinitionListPacket);
-
-        AvailableEntityIdentifiersPacket entityPacket = new AvailableEntityIdentifiersPacket();
-        entityPacket.setIdentifiers(Registries.BEDROCK_ENTITY_IDENTIFIERS.get());
-        session.sendPacket(entityPacket);
+    public void setClientData(CharSequence rawClientData, BedrockClientData clientData) {
+        this.rawClientData = clientData == null ? rawClientData : null;
+        this.clientData = clientData;
+    }
 
-        // Send a CreativeContentPacket - required for 1.16.100
-        CreativeContentPacket creativeContentPacket = new CreativeContentPacket();
-        creativeContentPacket.setContents(itemMappings.getCreativeItems());
-        session.sendPacket(creativeContentPacket);
+    /**
+     * Get the client data, decoding it if this is the first time it has been asked for.
+     * The signature has already been checked during login so it is only parsed here.
+     *
+     * @return The client data or null if it has been released
+     */
+    public BedrockClientData getClientData() {
+        if (clientData == null && rawClientData != null) {
+            try {
+                String originalString = rawClientData.toString();
+                clientData = LoginDecoder.readClientData(JWSObject.parse(originalString).getPayload().toBytes());
+                clientData.setOriginalString(originalString);
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to decode client data", e);
+            }
+            rawClientData = null;
+        }
+        return clientData;
+    }
 
-        // Let the client know the player can spawn
-        PlayStatusPacket playStatusPacket = new PlayStatusPacket();
-        playStatusPacket.setStatus(PlayStatusPacket.Status.PLAYER_SPAWN);
-        session.sendPacket(playStatusPacket);
+    /**
+     * Drop the client data so the memory can be reclaimed
+     */
+    public void releaseClientData() {
+        rawClientData = null;
+        clientData = null;
+    }
 
-        // Freeze the player
-        SetEntityMotionPacket setEntityMotionPacket = new SetEntityMotionPacket();
-        setEntityMotionPacket.setRuntimeEntityId(1);
-        setEntityMotionPacket.setMotion(Vector3f.ZERO);
-        session.sendPacket(setEntityMotionPacket);
+    /**
+     * Send the spawn sequence as a single cached compressed batch
+     *
+     * @param profile How much of the registries to send
+     * @param compression The compression algorithm the session uses
+     * @param compressionLevel The compression level the session uses
+     */
+    public void sendStartGame(SpawnProfile profile, PacketCompressionAlgorithm compression, int compressionLevel) {
+        // Nothing else is waiting to be sent at this point so this can't overtake anything
+        session.sendWrapped(SpawnSequence.getBatch(session, profile, compression, compressionLevel), true);
     }
 
     public void sendToServer(ServerInfo server) {
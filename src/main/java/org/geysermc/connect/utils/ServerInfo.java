@@ -44,6 +44,7 @@ public class ServerInfo {
         maxPlayers = original.getMaxPlayers();
         ip = original.getIp();
         port = original.getPort();
+        weight = original.getWeight();
     }
 
     private String motd;
@@ -58,4 +59,9 @@ public class ServerInfo {
     private String ip;
 
     private int port;
+
+    /**
+     * How many players this server should take relative to the other configured servers
+     */
+    private int weight = 1;
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.utils;
+
+/**
+ * The stages a session goes through on the way to being transferred
+ */
+public enum SessionState {
+    /**
+     * Connected and negotiating network settings
+     */
+    CONNECTING(false),
+
+    /**
+     * Waiting for the login to be verified
+     */
+    LOGGING_IN(false),
+
+    /**
+     * Logged in and going through the resource pack handshake
+     */
+    LOADING(true),
+
+    /**
+     * Sent the spawn sequence and waiting for the client to initialize
+     */
+    SPAWNING(true),
+
+    /**
+     * Spawned and waiting in the join queue for room on a backend
+     */
+    QUEUED(true),
+
+    /**
+     * Sent to a backend and waiting for the client to drop the connection
+     */
+    TRANSFERRED(false);
+
+    private static final SessionState[] VALUES = values();
+
+    /**
+     * If a session in this state counts as a player connected to us
+     */
+    private final boolean player;
+
+    SessionState(boolean player) {
+        this.player = player;
+    }
+
+    public boolean isPlayer() {
+        return player;
+    }
+
+    public static SessionState[] getAll() {
+        return VALUES;
+    }
+}
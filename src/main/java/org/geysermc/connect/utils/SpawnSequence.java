@@ -0,0 +1,438 @@
+/*
+ * Copyright (c) 2019-2022 GeyserMC. http://geysermc.org
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ *
+ * @author GeyserMC
+ * @link https://github.com/GeyserMC/GeyserConnect
+ */
+
+package org.geysermc.connect.utils;
+
+import com.nukkitx.math.vector.Vector2f;
+import com.nukkitx.math.vector.Vector3f;
+import com.nukkitx.math.vector.Vector3i;
+import com.nukkitx.nbt.NbtMap;
+import com.nukkitx.nbt.NbtType;
+import com.nukkitx.network.VarInts;
+import com.nukkitx.protocol.bedrock.BedrockPacketCodec;
+import com.nukkitx.protocol.bedrock.BedrockServerSession;
+import com.nukkitx.protocol.bedrock.BedrockSession;
+import com.nukkitx.protocol.bedrock.data.*;
+import com.nukkitx.protocol.bedrock.data.inventory.ItemData;
+import com.nukkitx.protocol.bedrock.packet.*;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.compression.Snappy;
+import org.geysermc.geyser.network.GameProtocol;
+import org.geysermc.geyser.registry.Registries;
+import org.geysermc.geyser.registry.type.ItemMappings;
+import org.geysermc.geyser.util.ChunkUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+
+/**
+ * The packets needed to get a client into the empty world, encoded once per protocol version and spawn profile.
+ * Every player on the same version gets the exact same bytes, only the buffers are shared.
+ */
+public final class SpawnSequence {
+
+    /**
+     * The first protocol version where the client asks for network settings before logging in,
+     * older clients always use zlib at the default level
+     */
+    public static final int NETWORK_SETTINGS_PROTOCOL = 554;
+
+    private static final byte[] EMPTY_CHUNK_DATA;
+
+    static {
+        ByteBuf byteBuf = Unpooled.buffer();
+        try {
+            for (int i = 0; i < 32; i++) {
+                byteBuf.writeBytes(ChunkUtils.EMPTY_BIOME_DATA);
+            }
+
+            byteBuf.writeByte(0); // Border
+
+            EMPTY_CHUNK_DATA = new byte[byteBuf.readableBytes()];
+            byteBuf.readBytes(EMPTY_CHUNK_DATA);
+        } finally {
+            byteBuf.release();
+        }
+    }
+
+    private static final Map<SequenceKey, EncodedPacket[]> CACHE = new HashMap<>();
+
+    /**
+     * Compressed batches of the whole sequence, read without locking but only built while holding CACHE
+     */
+    private static final Map<BatchKey, ByteBuf> BATCH_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Build the compressed batch for every supported protocol version up front, so the first player
+     * on each version doesn't compress it on an event loop
+     *
+     * @param eventLoop Any event loop, only used to create the session the packets are encoded with
+     * @param profile The spawn profile to use
+     * @param algorithm The compression algorithm sessions use, clients before {@link #NETWORK_SETTINGS_PROTOCOL} always use zlib
+     * @param level The compression level sessions use, only used by zlib
+     */
+    public static void prebuild(EventLoop eventLoop, SpawnProfile profile, PacketCompressionAlgorithm algorithm, int level) {
+        // Serializers read a few settings from the session but nothing is ever sent through this one
+        BedrockSession session = new BedrockServerSession(null, eventLoop, null);
+        for (BedrockPacketCodec codec : GameProtocol.SUPPORTED_BEDROCK_CODECS) {
+            if (codec.getProtocolVersion() < NETWORK_SETTINGS_PROTOCOL) {
+                buildBatch(codec, session, profile, PacketCompressionAlgorithm.ZLIB, Deflater.DEFAULT_COMPRESSION);
+            } else {
+                buildBatch(codec, session, profile, algorithm, level);
+            }
+        }
+    }
+
+    /**
+     * Get the whole sequence as a single compressed batch, ready for {@link BedrockSession#sendWrapped(ByteBuf, boolean)}.
+     * The batch is normally built by {@link #prebuild(EventLoop, SpawnProfile, PacketCompressionAlgorithm, int)}, otherwise it
+     * is compressed the first time a protocol version, profile, algorithm and level are seen. After that every player
+     * gets the exact same bytes. The returned buffer holds its own reference which sending releases.
+     *
+     * @param session The session to get the batch for
+     * @param profile The spawn profile to use
+     * @param algorithm The compression algorithm the session uses
+     * @param level The compression level the session uses, only used by zlib
+     * @return The compressed batch
+     */
+    public static ByteBuf getBatch(BedrockSession session, SpawnProfile profile, PacketCompressionAlgorithm algorithm, int level) {
+        BedrockPacketCodec codec = session.getPacketCodec();
+        ByteBuf batch = BATCH_CACHE.get(new BatchKey(codec.getProtocolVersion(), profile, algorithm, level));
+        if (batch == null) {
+            batch = buildBatch(codec, session, profile, algorithm, level);
+        }
+        return batch.retainedDuplicate();
+    }
+
+    private static ByteBuf buildBatch(BedrockPacketCodec codec, BedrockSession session, SpawnProfile profile, PacketCompressionAlgorithm algorithm, int level) {
+        BatchKey key = new BatchKey(codec.getProtocolVersion(), profile, algorithm, level);
+        synchronized (CACHE) {
+            ByteBuf batch = BATCH_CACHE.get(key);
+            if (batch == null) {
+                // Use the same level as every other packet so the configured level is what players actually get
+                batch = compressBatch(codec, session, profile, algorithm, level);
+                BATCH_CACHE.put(key, batch);
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Get the size of every compressed batch created so far
+     *
+     * @return The batch sizes
+     */
+    public static List<BatchSize> getBatchSizes() {
+        List<BatchSize> sizes = new ArrayList<>(BATCH_CACHE.size());
+        for (Map.Entry<BatchKey, ByteBuf> entry : BATCH_CACHE.entrySet()) {
+            BatchKey key = entry.getKey();
+            sizes.add(new BatchSize(key.protocolVersion(), key.profile(), key.algorithm(), key.level(), entry.getValue().readableBytes()));
+        }
+        return sizes;
+    }
+
+    /**
+     * Build and compress a new batch of the whole sequence, the same way the protocol library
+     * would when the packets are sent one by one
+     *
+     * @param session The session to build the batch for
+     * @param profile The spawn profile to use
+     * @param algorithm The compression algorithm to use
+     * @param level The compression level, only used by zlib
+     * @return The compressed batch
+     */
+    public static ByteBuf compressBatch(BedrockSession session, SpawnProfile profile, PacketCompressionAlgorithm algorithm, int level) {
+        return compressBatch(session.getPacketCodec(), session, profile, algorithm, level);
+    }
+
+    private static ByteBuf compressBatch(BedrockPacketCodec codec, BedrockSession session, SpawnProfile profile, PacketCompressionAlgorithm algorithm, int level) {
+        ByteBuf uncompressed = Unpooled.buffer();
+        try {
+            for (EncodedPacket packet : getEncoded(codec, session, profile)) {
+                writePacket(uncompressed, packet.id(), packet.payload());
+            }
+            return compress(uncompressed, algorithm, level);
+        } finally {
+            uncompressed.release();
+        }
+    }
+
+    /**
+     * Write an encoded packet into an uncompressed batch
+     *
+     * @param batch The batch to write to
+     * @param id The packet id
+     * @param payload The encoded packet, which isn't consumed
+     */
+    public static void writePacket(ByteBuf batch, int id, ByteBuf payload) {
+        // Sender and target sub client ids are always 0
+        int header = id & 0x3ff;
+        int headerSize = header < 0x80 ? 1 : 2;
+
+        VarInts.writeUnsignedInt(batch, headerSize + payload.readableBytes());
+        VarInts.writeUnsignedInt(batch, header);
+        batch.writeBytes(payload, payload.readerIndex(), payload.readableBytes());
+    }
+
+    /**
+     * Compress a batch the way the client expects for the given algorithm
+     *
+     * @param uncompressed The batch to compress, which isn't consumed
+     * @param algorithm The compression algorithm to use
+     * @param level The compression level, only used by zlib
+     * @return The compressed batch
+     */
+    public static ByteBuf compress(ByteBuf uncompressed, PacketCompressionAlgorithm algorithm, int level) {
+        return switch (algorithm) {
+            case ZLIB -> deflate(ByteBufUtil.getBytes(uncompressed), level);
+            case SNAPPY -> {
+                ByteBuf compressed = Unpooled.directBuffer(uncompressed.readableBytes());
+                new Snappy().encode(uncompressed.duplicate(), compressed, uncompressed.readableBytes());
+                yield compressed;
+            }
+            default -> throw new IllegalArgumentException("Unsupported compression algorithm " + algorithm);
+        };
+    }
+
+    private static ByteBuf deflate(byte[] input, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 4);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                output.write(chunk, 0, length);
+            }
+
+            byte[] compressed = output.toByteArray();
+            return Unpooled.directBuffer(compressed.length).writeBytes(compressed);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static EncodedPacket[] getEncoded(BedrockPacketCodec codec, BedrockSession session, SpawnProfile profile) {
+        SequenceKey key = new SequenceKey(codec.getProtocolVersion(), profile);
+        synchronized (CACHE) {
+            EncodedPacket[] encoded = CACHE.get(key);
+            if (encoded == null) {
+                encoded = encode(codec, session, profile);
+                CACHE.put(key, encoded);
+            }
+            return encoded;
+        }
+    }
+
+    private static EncodedPacket[] encode(BedrockPacketCodec codec, BedrockSession session, SpawnProfile profile) {
+        List<BedrockPacket> packets = createPackets(codec.getProtocolVersion(), profile);
+
+        EncodedPacket[] encoded = new EncodedPacket[packets.size()];
+        for (int i = 0; i < encoded.length; i++) {
+            BedrockPacket packet = packets.get(i);
+
+            ByteBuf payload = Unpooled.directBuffer();
+            codec.tryEncode(payload, packet, session);
+
+            encoded[i] = new EncodedPacket(codec.getId(packet), payload);
+        }
+        return encoded;
+    }
+
+    /**
+     * Build the packets that get the client to load in
+     *
+     * @param protocolVersion The protocol version to build the packets for
+     * @param profile How much of the registries to send
+     * @return The packets in the order they need sending
+     */
+    public static List<BedrockPacket> createPackets(int protocolVersion, SpawnProfile profile) {
+        boolean minimal = profile == SpawnProfile.MINIMAL;
+        ItemMappings itemMappings = Registries.ITEMS.forVersion(protocolVersion);
+
+        // A lot of this likely doesn't need to be changed
+        StartGamePacket startGamePacket = new StartGamePacket();
+        startGamePacket.setUniqueEntityId(1);
+        startGamePacket.setRuntimeEntityId(1);
+        startGamePacket.setPlayerGameType(GameType.CREATIVE);
+        startGamePacket.setPlayerPosition(Vector3f.from(0, 64 + 2, 0));
+        startGamePacket.setRotation(Vector2f.ONE);
+
+        startGamePacket.setSeed(-1L);
+        startGamePacket.setDimensionId(2);
+        startGamePacket.setGeneratorId(1);
+        startGamePacket.setLevelGameType(GameType.CREATIVE);
+        startGamePacket.setDifficulty(0);
+        startGamePacket.setDefaultSpawn(Vector3i.ZERO);
+        startGamePacket.setAchievementsDisabled(true);
+        startGamePacket.setCurrentTick(-1);
+        startGamePacket.setEduEditionOffers(0);
+        startGamePacket.setEduFeaturesEnabled(false);
+        startGamePacket.setRainLevel(0);
+        startGamePacket.setLightningLevel(0);
+        startGamePacket.setMultiplayerGame(true);
+        startGamePacket.setBroadcastingToLan(true);
+        startGamePacket.getGamerules().add(new GameRuleData<>("showcoordinates", true));
+        startGamePacket.setPlatformBroadcastMode(GamePublishSetting.PUBLIC);
+        startGamePacket.setXblBroadcastMode(GamePublishSetting.PUBLIC);
+        startGamePacket.setCommandsEnabled(true);
+        startGamePacket.setTexturePacksRequired(false);
+        startGamePacket.setBonusChestEnabled(false);
+        startGamePacket.setStartingWithMap(false);
+        startGamePacket.setTrustingPlayers(true);
+        startGamePacket.setDefaultPlayerPermission(PlayerPermission.VISITOR);
+        startGamePacket.setServerChunkTickRange(4);
+        startGamePacket.setBehaviorPackLocked(false);
+        startGamePacket.setResourcePackLocked(false);
+        startGamePacket.setFromLockedWorldTemplate(false);
+        startGamePacket.setUsingMsaGamertagsOnly(false);
+        startGamePacket.setFromWorldTemplate(false);
+        startGamePacket.setWorldTemplateOptionLocked(false);
+
+        startGamePacket.setLevelId("");
+        startGamePacket.setLevelName("GeyserConnect");
+        startGamePacket.setPremiumWorldTemplateId("");
+        startGamePacket.setCurrentTick(0);
+        startGamePacket.setEnchantmentSeed(0);
+        startGamePacket.setMultiplayerCorrelationId("");
+        // Kept in full for every profile as the client needs them to know every item runtime id
+        startGamePacket.setItemEntries(itemMappings.getItemEntries());
+        startGamePacket.setInventoriesServerAuthoritative(true);
+        startGamePacket.setServerEngine("");
+        startGamePacket.setPlayerPropertyData(NbtMap.EMPTY);
+        // The world is never saved so the template id only needs to be unique per version
+        startGamePacket.setWorldTemplateId(UUID.randomUUID());
+        startGamePacket.setChatRestrictionLevel(ChatRestrictionLevel.NONE);
+
+        SyncedPlayerMovementSettings settings = new SyncedPlayerMovementSettings();
+        settings.setMovementMode(AuthoritativeMovementMode.CLIENT);
+        settings.setRewindHistorySize(0);
+        settings.setServerAuthoritativeBlockBreaking(false);
+        startGamePacket.setPlayerMovementSettings(settings);
+
+        startGamePacket.setVanillaVersion("*");
+
+        // Send an empty chunk
+        LevelChunkPacket data = new LevelChunkPacket();
+        data.setChunkX(0);
+        data.setChunkZ(0);
+        data.setSubChunksLength(0);
+        data.setData(EMPTY_CHUNK_DATA);
+        data.setCachingEnabled(false);
+
+        // Send the biomes
+        BiomeDefinitionListPacket biomeDefinitionListPacket = new BiomeDefinitionListPacket();
+        biomeDefinitionListPacket.setDefinitions(minimal ? minimalBiomes() : Registries.BIOMES_NBT.get());
+
+        AvailableEntityIdentifiersPacket entityPacket = new AvailableEntityIdentifiersPacket();
+        entityPacket.setIdentifiers(minimal ? minimalEntityIdentifiers() : Registries.BEDROCK_ENTITY_IDENTIFIERS.get());
+
+        // Send a CreativeContentPacket - required for 1.16.100, but it can be empty
+        CreativeContentPacket creativeContentPacket = new CreativeContentPacket();
+        creativeContentPacket.setContents(minimal ? new ItemData[0] : itemMappings.getCreativeItems());
+
+        // Let the client know the player can spawn
+        PlayStatusPacket playStatusPacket = new PlayStatusPacket();
+        playStatusPacket.setStatus(PlayStatusPacket.Status.PLAYER_SPAWN);
+
+        // Freeze the player
+        SetEntityMotionPacket setEntityMotionPacket = new SetEntityMotionPacket();
+        setEntityMotionPacket.setRuntimeEntityId(1);
+        setEntityMotionPacket.setMotion(Vector3f.ZERO);
+
+        return List.of(startGamePacket, data, biomeDefinitionListPacket, entityPacket,
+                creativeContentPacket, playStatusPacket, setEntityMotionPacket);
+    }
+
+    /**
+     * Only the ocean biome, which is the biome the empty chunk uses
+     *
+     * @return The biome definitions
+     */
+    private static NbtMap minimalBiomes() {
+        NbtMap biomes = Registries.BIOMES_NBT.get();
+        NbtMap ocean = biomes.getCompound("ocean", null);
+        if (ocean == null) {
+            return biomes;
+        }
+        return NbtMap.builder().putCompound("ocean", ocean).build();
+    }
+
+    /**
+     * Only the player entity, as no other entities are ever spawned
+     *
+     * @return The entity identifiers
+     */
+    private static NbtMap minimalEntityIdentifiers() {
+        NbtMap identifiers = Registries.BEDROCK_ENTITY_IDENTIFIERS.get();
+
+        List<NbtMap> players = new ArrayList<>(1);
+        for (NbtMap identifier : identifiers.getList("idlist", NbtType.COMPOUND)) {
+            if ("minecraft:player".equals(identifier.getString("id"))) {
+                players.add(identifier);
+            }
+        }
+
+        if (players.isEmpty()) {
+            return identifiers;
+        }
+        return NbtMap.builder().putList("idlist", NbtType.COMPOUND, players).build();
+    }
+
+    /**
+     * The size of a cached compressed batch
+     *
+     * @param protocolVersion The protocol version the batch is for
+     * @param profile The spawn profile the batch was built with
+     * @param algorithm The compression algorithm the batch uses
+     * @param level The compression level the batch was compressed at
+     * @param bytes The size of the batch in bytes
+     */
+    public record BatchSize(int protocolVersion, SpawnProfile profile, PacketCompressionAlgorithm algorithm, int level, int bytes) {
+    }
+
+    private record EncodedPacket(int id, ByteBuf payload) {
+    }
+
+    private record SequenceKey(int protocolVersion, SpawnProfile profile) {
+    }
+
+    private record BatchKey(int protocolVersion, SpawnProfile profile, PacketCompressionAlgorithm algorithm, int level) {
+    }
+
+    private SpawnSequence() {
+    }
+}